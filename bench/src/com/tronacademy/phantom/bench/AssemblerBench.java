@@ -0,0 +1,85 @@
+package com.tronacademy.phantom.bench;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.tronacademy.phantom.messaging.OutgoingTransaction;
+import com.tronacademy.phantom.messaging.PBitmap;
+import com.tronacadmey.phantom.killalot.KillalotAssembler;
+import com.tronacadmey.phantom.killalot.KillalotPacket;
+
+/**
+ * <p>
+ * Time taken by {@code KillalotAssembler.serializeAsBitmap} to 
+ * turn an RGB565 camera-like image into a transaction, by 
+ * resolution and compression.
+ * </p>
+ *
+ * <p>
+ * Uncompressed images are framed as they are sent, so 
+ * {@code serializeAndEncode} also times encoding every frame 
+ * of the transaction.
+ * </p>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AssemblerBench {
+
+	@Param({"160x120", "320x240", "640x480"})
+	public String resolution;
+	
+	@Param({"raw", "rle", "lz"})
+	public String compression;
+	
+	private final KillalotAssembler mAssembler = new KillalotAssembler();
+	private PBitmap mBitmap;
+	private byte mCompression;
+	private ByteBuffer mDst;
+	
+	@Setup
+	public void setup() {
+		final String[] size = resolution.split("x");
+		final int width = Integer.parseInt(size[0]);
+		final int height = Integer.parseInt(size[1]);
+		mBitmap = new PBitmap(Payloads.scene(width, height), width, height);
+		
+		if (compression.equals("rle")) {
+			mCompression = KillalotAssembler.K_IMG_ENC_RLE;
+		} else if (compression.equals("lz")) {
+			mCompression = KillalotAssembler.K_IMG_ENC_LZ;
+		} else {
+			mCompression = KillalotAssembler.K_IMG_ENC_RAW;
+		}
+		
+		final int frames = mBitmap.getSizeInBytes() / KillalotPacket.PAYLOAD_LEN + 1;
+		mDst = ByteBuffer.allocate(frames * KillalotPacket.WORST_CASE_CRC_PACKET_LEN);
+	}
+	
+	@Benchmark
+	public OutgoingTransaction serializeAsBitmap() {
+		return mAssembler.serializeAsBitmap("bench", mBitmap, mCompression);
+	}
+	
+	@Benchmark
+	public ByteBuffer serializeAndEncode() {
+		mDst.clear();
+		mAssembler.serializeAsBitmap("bench", mBitmap, mCompression).encodeTo(mDst);
+		return mDst;
+	}
+}
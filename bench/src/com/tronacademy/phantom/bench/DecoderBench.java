@@ -0,0 +1,120 @@
+package com.tronacademy.phantom.bench;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.tronacademy.phantom.messaging.OutgoingTransaction;
+import com.tronacademy.phantom.messaging.PBitmap;
+import com.tronacademy.phantom.messaging.ProtocolDecoder.ErrorType;
+import com.tronacademy.phantom.messaging.ProtocolDecoder.ProtocolDecodeListener;
+import com.tronacademy.phantom.messaging.ProtocolDecoder.RequestType;
+import com.tronacademy.phantom.messaging.TransactionError;
+import com.tronacadmey.phantom.killalot.KillalotAssembler;
+import com.tronacadmey.phantom.killalot.KillalotDecoder;
+import com.tronacadmey.phantom.killalot.KillalotPacket;
+
+/**
+ * <p>
+ * Throughput of {@code KillalotDecoder.decode} on the encoded
+ * stream of a 320x240 uncompressed image, including assembly of
+ * the bitmap. One operation is one byte of decoded frame, timed 
+ * in microseconds, so scores read as MB/s.
+ * </p>
+ *
+ * <p>
+ * {@code plain} pixels hold no bytes which need escaping,
+ * {@code escaped} pixels hold nothing else.
+ * </p>
+ *
+ * <p>
+ * {@code crc} sends and checks the CRC-16 of each frame, so its 
+ * cost reads against decoding the same frames unchecked.
+ * </p>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DecoderBench {
+
+	static final int WIDTH = 320;
+	static final int HEIGHT = 240;
+	static final int FRAMES = WIDTH * HEIGHT * 2 / KillalotPacket.PAYLOAD_LEN + 1;
+	static final int BYTES = FRAMES * 12;
+	
+	@Param({"plain", "escaped"})
+	public String payload;
+	
+	@Param({"false", "true"})
+	public boolean crc;
+	
+	private byte[] mStream;
+	private KillalotDecoder mDecoder;
+	private Blackhole mBlackhole;
+	
+	@Setup
+	public void setup(Blackhole blackhole) {
+		final PBitmap bmp = new PBitmap(Payloads.noise(WIDTH, HEIGHT, payload.equals("escaped")), WIDTH, HEIGHT);
+		final KillalotAssembler assembler = new KillalotAssembler();
+		assembler.setFrameCrc(crc);
+		final OutgoingTransaction trans = assembler.serializeAsBitmap("bench", bmp, KillalotAssembler.K_IMG_ENC_RAW);
+		if (trans.getNumPackets() != FRAMES) {
+			throw new IllegalStateException("Image took " + trans.getNumPackets() + " frames");
+		}
+		
+		final ByteBuffer buffer = ByteBuffer.allocate(FRAMES * KillalotPacket.WORST_CASE_CRC_PACKET_LEN);
+		trans.encodeTo(buffer);
+		buffer.flip();
+		mStream = new byte[buffer.remaining()];
+		buffer.get(mStream);
+		
+		mBlackhole = blackhole;
+		mDecoder = new KillalotDecoder();
+		mDecoder.setFrameCrc(crc);
+		mDecoder.setOnProtocolDecodeListener(new ProtocolDecodeListener() {
+			@Override
+			public void onRecvChannels(int startChan, byte[] values) {
+			}
+			
+			@Override
+			public void onRecvCommands(String command, TransactionError error) {
+			}
+			
+			@Override
+			public void onRecvBitmap(PBitmap bmp, TransactionError error) {
+				mBlackhole.consume(bmp);
+			}
+			
+			@Override
+			public void onRequest(RequestType request, int code) {
+			}
+			
+			@Override
+			public void onError(ErrorType error, int code) {
+				throw new IllegalStateException("Decode error " + error);
+			}
+		});
+	}
+	
+	@Benchmark
+	@OperationsPerInvocation(BYTES)
+	public void decode() {
+		mDecoder.decode(mStream, 0, mStream.length);
+	}
+}
@@ -0,0 +1,178 @@
+package com.tronacademy.phantom.bench;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Pipe;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.tronacademy.phantom.comm.ChannelCommManager;
+import com.tronacademy.phantom.comm.LinkHub;
+import com.tronacademy.phantom.messaging.OutgoingTransaction;
+import com.tronacademy.phantom.messaging.PBitmap;
+import com.tronacademy.phantom.messaging.ProtocolDecoder.ErrorType;
+import com.tronacademy.phantom.messaging.ProtocolDecoder.ProtocolDecodeListener;
+import com.tronacademy.phantom.messaging.ProtocolDecoder.RequestType;
+import com.tronacademy.phantom.messaging.TransactionError;
+import com.tronacadmey.phantom.killalot.KillalotAssembler;
+import com.tronacadmey.phantom.killalot.KillalotDecoder;
+import com.tronacadmey.phantom.killalot.KillalotPacket;
+
+/**
+ * <p>
+ * Throughput of a {@code LinkHub} receiving channel frames from 
+ * many loopback links at once, by number of workers. Each link is
+ * a pipe fed by its own thread, standing in for a vehicle. One 
+ * operation is one byte of decoded frame, timed in microseconds, 
+ * so scores read as MB/s summed over all links.
+ * </p>
+ *
+ * <p>
+ * {@code workers} of 0 reads every link on its own thread instead
+ * of a pool. Scores should rise with workers up to the number of
+ * cores, compare runs on machines with different core counts.
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LinkHubBench {
+
+	static final int LINKS = 16;
+	static final int FRAMES = 4096;
+	static final int BYTES = LINKS * FRAMES * 12;
+	static final int CHANNELS_PER_FRAME = KillalotPacket.PAYLOAD_LEN;
+	
+	@Param({"1", "2", "4", "8", "0"})
+	public int workers;
+	
+	private LinkHub mHub;
+	private Pipe[] mRx;
+	private Thread[] mFeeders;
+	private Semaphore[] mGo;
+	private volatile CountDownLatch mDone;
+	private byte[] mStream;
+	
+	/**
+	 * Counts the frames of one link and reports each whole round.
+	 */
+	private class RoundCounter implements ProtocolDecodeListener {
+		private int mFrames = 0;
+		
+		@Override
+		public void onRecvChannels(int startChan, byte[] values) {
+			if (++mFrames == FRAMES) {
+				mFrames = 0;
+				mDone.countDown();
+			}
+		}
+		
+		@Override
+		public void onRecvCommands(String command, TransactionError error) {
+		}
+		
+		@Override
+		public void onRecvBitmap(PBitmap bmp, TransactionError error) {
+		}
+		
+		@Override
+		public void onRequest(RequestType request, int code) {
+		}
+		
+		@Override
+		public void onError(ErrorType error, int code) {
+		}
+	}
+	
+	@Setup
+	public void setup() throws IOException {
+		// one round is FRAMES single frame channel streams per link
+		final KillalotAssembler assembler = new KillalotAssembler();
+		final byte[] channels = new byte[CHANNELS_PER_FRAME];
+		final ByteBuffer buffer = ByteBuffer.allocate(FRAMES * KillalotPacket.WORST_CASE_CRC_PACKET_LEN);
+		for (int f=0; f<FRAMES; f++) {
+			channels[0] = (byte) f;
+			final OutgoingTransaction trans = assembler.serializeAsChannels("bench", channels);
+			trans.encodeTo(buffer);
+		}
+		buffer.flip();
+		mStream = new byte[buffer.remaining()];
+		buffer.get(mStream);
+		
+		mHub = (workers > 0) ? new LinkHub(workers) : LinkHub.threadPerLink();
+		mRx = new Pipe[LINKS];
+		mFeeders = new Thread[LINKS];
+		mGo = new Semaphore[LINKS];
+		for (int i=0; i<LINKS; i++) {
+			mRx[i] = Pipe.open();
+			final KillalotDecoder decoder = new KillalotDecoder();
+			decoder.setOnProtocolDecodeListener(new RoundCounter());
+			mHub.addLink(ChannelCommManager.overPipes(mRx[i], Pipe.open()), decoder);
+			
+			final Pipe.SinkChannel sink = mRx[i].sink();
+			final Semaphore go = new Semaphore(0);
+			mGo[i] = go;
+			mFeeders[i] = new Thread("feeder-" + i) {
+				@Override
+				public void run() {
+					final ByteBuffer src = ByteBuffer.wrap(mStream);
+					try {
+						while (true) {
+							go.acquire();
+							src.clear();
+							while (src.hasRemaining()) {
+								sink.write(src);
+							}
+						}
+					} catch (InterruptedException e) {
+						// benchmark finished
+					} catch (IOException e) {
+						// link closed
+					}
+				}
+			};
+			mFeeders[i].setDaemon(true);
+			mFeeders[i].start();
+		}
+	}
+	
+	@TearDown
+	public void tearDown() throws IOException {
+		for (Thread feeder : mFeeders) {
+			feeder.interrupt();
+		}
+		mHub.shutdown();
+		for (Pipe rx : mRx) {
+			rx.sink().close();
+			rx.source().close();
+		}
+	}
+	
+	@Benchmark
+	@OperationsPerInvocation(BYTES)
+	public void receive() throws InterruptedException {
+		mDone = new CountDownLatch(LINKS);
+		for (Semaphore go : mGo) {
+			go.release();
+		}
+		mDone.await();
+	}
+}
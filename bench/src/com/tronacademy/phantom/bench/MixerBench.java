@@ -0,0 +1,113 @@
+package com.tronacademy.phantom.bench;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.tronacademy.phantom.mixer.ChannelStreamSizeMismatchException;
+import com.tronacademy.phantom.mixer.FixedPointMixer;
+import com.tronacademy.phantom.mixer.MatrixMixer;
+import com.tronacademy.phantom.mixer.Mixer;
+import com.tronacademy.phantom.mixer.SparseMatrixMixer;
+
+/**
+ * <p>
+ * Latency of mixing one frame with {@code Mixer.mix} into
+ * a caller owned output, by number of channels and mixer.
+ * Every mixer is given the same mix, so {@code fixed} against
+ * {@code matrix} is the speedup of fixed point.
+ * </p>
+ *
+ * <p>
+ * {@code dense} mixes have every co-efficient non-zero, 
+ * {@code sparse} mixes only four per row, which is where
+ * {@code sparse} mixers should beat {@code matrix}.
+ * </p>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MixerBench {
+
+	static final int SPARSE_ROW_NON_ZEROS = 4;
+
+	@Param({"8", "16", "32", "64", "128"})
+	public int channels;
+	
+	@Param({"matrix", "fixed", "sparse"})
+	public String mixer;
+	
+	@Param({"dense", "sparse"})
+	public String mix;
+	
+	private Mixer mMixer;
+	private byte[] mIn;
+	private byte[] mOut;
+	
+	@Setup
+	public void setup() {
+		final Random random = new Random(channels);
+		final double[][] coeffs = new double[channels][channels];
+		for (int i=0; i<channels; i++) {
+			if (mix.equals("sparse")) {
+				for (int k=0; k<SPARSE_ROW_NON_ZEROS; k++) {
+					coeffs[i][random.nextInt(channels)] = (random.nextInt(512) - 256) / 256.0 / SPARSE_ROW_NON_ZEROS;
+				}
+			} else {
+				for (int j=0; j<channels; j++) {
+					coeffs[i][j] = (random.nextInt(512) - 256) / 256.0 / channels;
+				}
+			}
+		}
+		
+		if (mixer.equals("fixed")) {
+			final FixedPointMixer fixed = new FixedPointMixer(channels, "bench");
+			for (int i=0; i<channels; i++) {
+				for (int j=0; j<channels; j++) {
+					fixed.setMixCoefficient(i, j, coeffs[i][j]);
+				}
+			}
+			mMixer = fixed;
+		} else if (mixer.equals("sparse")) {
+			final SparseMatrixMixer sparse = new SparseMatrixMixer(channels, "bench");
+			for (int i=0; i<channels; i++) {
+				for (int j=0; j<channels; j++) {
+					sparse.setMixCoefficient(i, j, coeffs[i][j]);
+				}
+			}
+			mMixer = sparse;
+		} else {
+			final MatrixMixer matrix = new MatrixMixer(channels, "bench");
+			for (int i=0; i<channels; i++) {
+				for (int j=0; j<channels; j++) {
+					matrix.setMixCoefficient(i, j, coeffs[i][j]);
+				}
+			}
+			mMixer = matrix;
+		}
+		
+		mIn = new byte[channels];
+		random.nextBytes(mIn);
+		mOut = new byte[channels];
+	}
+	
+	@Benchmark
+	public byte[] mix() throws ChannelStreamSizeMismatchException {
+		mMixer.mix(mIn, mOut);
+		return mOut;
+	}
+}
@@ -0,0 +1,74 @@
+package com.tronacademy.phantom.bench;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.tronacadmey.phantom.killalot.KillalotPacket;
+
+/**
+ * <p>
+ * Throughput of SLIP encoding Killalot frames. One operation is
+ * one byte of frame, timed in microseconds, so scores read as MB/s.
+ * </p>
+ *
+ * <p>
+ * {@code plain} payloads hold no bytes which need escaping,
+ * {@code escaped} payloads hold nothing else, doubling their
+ * encoded size.
+ * </p>
+ *
+ * <p>
+ * {@code crc} appends the CRC-16 of each frame, so its cost
+ * reads against the unchecked encoding of the same frames.
+ * </p>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PacketBench {
+
+	static final int FRAMES = 4096;
+	static final int BYTES = FRAMES * 12;
+	
+	@Param({"plain", "escaped"})
+	public String payload;
+	
+	@Param({"false", "true"})
+	public boolean crc;
+	
+	private byte[] mFrames;
+	private ByteBuffer mDst;
+	
+	@Setup
+	public void setup() {
+		mFrames = Payloads.frames(FRAMES, payload.equals("escaped"));
+		mDst = ByteBuffer.allocate(FRAMES * KillalotPacket.WORST_CASE_CRC_PACKET_LEN);
+	}
+	
+	@Benchmark
+	@OperationsPerInvocation(BYTES)
+	public ByteBuffer encode() {
+		final int frameLen = KillalotPacket.getDecodedSize();
+		mDst.clear();
+		for (int offset=0; offset<mFrames.length; offset+=frameLen) {
+			KillalotPacket.encode(mFrames, offset, mDst, crc);
+		}
+		return mDst;
+	}
+}
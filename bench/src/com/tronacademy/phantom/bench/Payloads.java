@@ -0,0 +1,86 @@
+package com.tronacademy.phantom.bench;
+
+import java.util.Random;
+
+import com.tronacadmey.phantom.killalot.KillalotAssembler;
+import com.tronacadmey.phantom.killalot.KillalotPacket;
+
+/**
+ * Test data shared by the benchmarks, seeded so every run 
+ * measures the same bytes.
+ */
+final class Payloads {
+
+	private static final long SEED = 0x5EEDL;
+	
+	private Payloads() {
+	}
+	
+	/**
+	 * @param escaped Whether bytes should all need SLIP escaping.
+	 * @return Random byte which needs escaping or not.
+	 */
+	static byte nextByte(Random random, boolean escaped) {
+		if (escaped) {
+			return random.nextBoolean() ? KillalotPacket.SLIP_END : KillalotPacket.SLIP_ESC;
+		}
+		byte b;
+		do {
+			b = (byte) random.nextInt(256);
+		} while (b == KillalotPacket.SLIP_END || b == KillalotPacket.SLIP_ESC);
+		return b;
+	}
+	
+	/**
+	 * @param count   Number of frames.
+	 * @param escaped Whether payloads should all need SLIP escaping.
+	 * @return Back to back unencoded channel frames.
+	 */
+	static byte[] frames(int count, boolean escaped) {
+		final Random random = new Random(SEED);
+		final int frameLen = KillalotPacket.getDecodedSize();
+		final byte[] frames = new byte[count * frameLen];
+		for (int f=0; f<count; f++) {
+			final int offset = f * frameLen;
+			frames[offset] = KillalotAssembler.CHANNEL_INDICATOR;
+			for (int i=KillalotPacket.HEADER_LEN; i<frameLen; i++) {
+				frames[offset + i] = nextByte(random, escaped);
+			}
+		}
+		return frames;
+	}
+	
+	/**
+	 * @param escaped Whether pixel bytes should all need SLIP escaping.
+	 * @return Pixels of random noise.
+	 */
+	static short[] noise(int width, int height, boolean escaped) {
+		final Random random = new Random(SEED);
+		final short[] pixels = new short[width * height];
+		for (int i=0; i<pixels.length; i++) {
+			pixels[i] = (short) (((nextByte(random, escaped) & 0xFF) << 8) | (nextByte(random, escaped) & 0xFF));
+		}
+		return pixels;
+	}
+	
+	/**
+	 * @return Pixels of a smooth gradient overlaid with sparse noise, 
+	 *         roughly like a camera image.
+	 */
+	static short[] scene(int width, int height) {
+		final Random random = new Random(SEED);
+		final short[] pixels = new short[width * height];
+		for (int y=0; y<height; y++) {
+			for (int x=0; x<width; x++) {
+				int r = (x * 32 / width) & 0x1F;
+				int g = (y * 64 / height) & 0x3F;
+				int b = ((x + y) * 32 / (width + height)) & 0x1F;
+				if (random.nextInt(16) == 0) {
+					g = random.nextInt(64);
+				}
+				pixels[y*width + x] = (short) ((r << 11) | (g << 5) | b);
+			}
+		}
+		return pixels;
+	}
+}
@@ -0,0 +1,162 @@
+package com.tronacademy.phantom.comm;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.Pipe;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.SelectableChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * <p>
+ * Communication link built on a pair of NIO channels. Bytes can
+ * be read in whole buffers instead of one at a time, and if the
+ * read channel is selectable the link can be serviced together
+ * with many others by one thread through a {@code Selector}.
+ * </p>
+ * 
+ * <p>
+ * Sockets, pipes and files all provide suitable channels. 
+ * </p>
+ * 
+ * <p>
+ * Links are read either through {@link #getInputStream()} or by
+ * registering with a selector, not both. Registering makes the
+ * read channel non-blocking, which stream reads do not support.
+ * </p>
+ */
+public class ChannelCommManager extends CommManager {
+
+	private static final String registeredErrMsg = 
+			"Link is registered with a selector, its read channel is non-blocking";
+	
+	private final ReadableByteChannel mReadChannel;
+	private final WritableByteChannel mWriteChannel;
+	private InputStream mInputStream = null;
+	private boolean mRegistered = false;
+	
+	/**
+	 * @param readChannel  Channel bytes are received from.
+	 * @param writeChannel Channel bytes are transmitted to.
+	 */
+	public ChannelCommManager(ReadableByteChannel readChannel, WritableByteChannel writeChannel) {
+		mReadChannel = readChannel;
+		mWriteChannel = writeChannel;
+	}
+	
+	/**
+	 * Create a link whose received bytes come from one pipe and
+	 * transmitted bytes go to another, for use as a local stand-in 
+	 * for a real link.
+	 * 
+	 * @param rx Pipe to receive from through its source.
+	 * @param tx Pipe to transmit to through its sink.
+	 * @return Link over the pipes.
+	 */
+	public static ChannelCommManager overPipes(Pipe rx, Pipe tx) {
+		return new ChannelCommManager(rx.source(), tx.sink());
+	}
+	
+	/**
+	 * @return Stream of received bytes, which blocks until bytes arrive.
+	 * @throws IllegalStateException if the link has been registered with a selector.
+	 */
+	@Override
+	public synchronized InputStream getInputStream() throws IllegalStateException {
+		if (mRegistered) {
+			throw new IllegalStateException(registeredErrMsg);
+		}
+		if (mInputStream == null) {
+			mInputStream = Channels.newInputStream(mReadChannel);
+		}
+		return mInputStream;
+	}
+	
+	/**
+	 * @return Channel bytes are received from.
+	 */
+	public ReadableByteChannel getReadChannel() {
+		return mReadChannel;
+	}
+	
+	/**
+	 * @return Channel bytes are transmitted to.
+	 */
+	public WritableByteChannel getWriteChannel() {
+		return mWriteChannel;
+	}
+	
+	/**
+	 * @return Flag indicating whether this link can be registered with a selector.
+	 */
+	public boolean isSelectable() {
+		return mReadChannel instanceof SelectableChannel;
+	}
+	
+	/**
+	 * Switch the read channel to non-blocking mode and register it 
+	 * with a selector for reads. From then on the link can no longer 
+	 * be read through {@link #getInputStream()}, including any stream
+	 * already handed out.
+	 * 
+	 * @param selector   Selector to register with.
+	 * @param attachment Object to attach to the selection key.
+	 * @return Selection key of the registration.
+	 * @throws IllegalStateException if the read channel is not selectable.
+	 * @throws ClosedChannelException if the read channel is closed.
+	 * @throws IOException if the channel cannot be made non-blocking.
+	 */
+	public SelectionKey register(Selector selector, Object attachment) 
+			throws IllegalStateException, ClosedChannelException, IOException {
+		if (!isSelectable()) {
+			throw new IllegalStateException("Read channel of link is not selectable");
+		}
+		final SelectableChannel channel = (SelectableChannel) mReadChannel;
+		synchronized (this) {
+			mRegistered = true;
+		}
+		channel.configureBlocking(false);
+		return channel.register(selector, SelectionKey.OP_READ, attachment);
+	}
+	
+	/**
+	 * Read whatever bytes are available into a buffer.
+	 * 
+	 * @param dst Buffer to read into.
+	 * @return Number of bytes read, -1 if the link has closed.
+	 * @throws IOException if the read fails.
+	 */
+	public int read(ByteBuffer dst) throws IOException {
+		return mReadChannel.read(dst);
+	}
+	
+	/**
+	 * Write all remaining bytes of a buffer.
+	 * 
+	 * @param src Buffer to transmit.
+	 * @throws IOException if the write fails.
+	 */
+	public void write(ByteBuffer src) throws IOException {
+		while (src.hasRemaining()) {
+			mWriteChannel.write(src);
+		}
+	}
+	
+	/**
+	 * Close both channels of this link.
+	 * 
+	 * @throws IOException if closing fails.
+	 */
+	public void close() throws IOException {
+		try {
+			mReadChannel.close();
+		} finally {
+			mWriteChannel.close();
+		}
+	}
+}
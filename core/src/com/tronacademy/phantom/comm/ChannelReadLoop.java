@@ -0,0 +1,202 @@
+package com.tronacademy.phantom.comm;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.tronacademy.phantom.messaging.ProtocolDecoder;
+
+/**
+ * <p>
+ * Services many selectable links from one thread. Whenever 
+ * bytes arrive on a link they are read in one go and the 
+ * whole buffer is handed to that link's decoder, so there 
+ * is no polling delay.
+ * </p>
+ * 
+ * <p>
+ * Decoders are run on the loop's thread. Links may be added
+ * from any thread. When a link reaches end of stream, fails to
+ * read, or its decoder or a listener behind it throws, that link
+ * alone is closed and dropped from the loop, and reported to any
+ * {@link OnLinkDroppedListener}. The other links carry on.
+ * </p>
+ */
+public class ChannelReadLoop implements Runnable {
+
+	/**
+	 * Told about links the loop has dropped, on the loop's thread.
+	 */
+	public interface OnLinkDroppedListener {
+		/**
+		 * @param comm  Link which was closed and dropped.
+		 * @param cause Exception which caused it, null at end of stream.
+		 */
+		public void onLinkDropped(ChannelCommManager comm, Exception cause);
+	}
+	
+	public static final int DEFAULT_BUFFER_SIZE = 4096;
+	
+	private final Selector mSelector;
+	private final ByteBuffer mBuffer;
+	private final Queue<Link> mPending = new ConcurrentLinkedQueue<Link>();
+	// cancelled keys stay in the selector until its next select, so links are counted here
+	private final AtomicInteger mNumLinks = new AtomicInteger();
+	private volatile boolean mRunning = true;
+	private volatile OnLinkDroppedListener mDroppedListener = null;
+	
+	private static class Link {
+		final ChannelCommManager comm;
+		final ProtocolDecoder decoder;
+		
+		Link(ChannelCommManager comm, ProtocolDecoder decoder) {
+			this.comm = comm;
+			this.decoder = decoder;
+		}
+	}
+	
+	/**
+	 * @throws IOException if a selector cannot be opened.
+	 */
+	public ChannelReadLoop() throws IOException {
+		this(DEFAULT_BUFFER_SIZE);
+	}
+	
+	/**
+	 * @param bufferSize Most bytes read from a link at a time.
+	 * @throws IOException if a selector cannot be opened.
+	 */
+	public ChannelReadLoop(int bufferSize) throws IOException {
+		mSelector = Selector.open();
+		mBuffer = ByteBuffer.allocateDirect(bufferSize);
+	}
+	
+	/**
+	 * Start servicing a link.
+	 * 
+	 * @param comm    Link to read from.
+	 * @param decoder Decoder to hand received bytes to.
+	 * @throws IllegalStateException if the link is not selectable.
+	 */
+	public void addLink(ChannelCommManager comm, ProtocolDecoder decoder) throws IllegalStateException {
+		if (!comm.isSelectable()) {
+			throw new IllegalStateException("Read channel of link is not selectable");
+		}
+		mNumLinks.incrementAndGet();
+		mPending.add(new Link(comm, decoder));
+		mSelector.wakeup();
+	}
+	
+	/**
+	 * @param listener Listener told about dropped links, null for none.
+	 */
+	public void setOnLinkDroppedListener(OnLinkDroppedListener listener) {
+		mDroppedListener = listener;
+	}
+	
+	/**
+	 * @return Number of links being serviced.
+	 */
+	public int getNumLinks() {
+		return mNumLinks.get();
+	}
+	
+	/**
+	 * Ask the loop to finish, it closes its selector on the way out.
+	 */
+	public void stop() {
+		mRunning = false;
+		mSelector.wakeup();
+	}
+	
+	@Override
+	public void run() {
+		try {
+			while (mRunning) {
+				registerPending();
+				mSelector.select();
+				
+				final Iterator<SelectionKey> keys = mSelector.selectedKeys().iterator();
+				while (keys.hasNext()) {
+					final SelectionKey key = keys.next();
+					keys.remove();
+					if (key.isValid() && key.isReadable()) {
+						service(key);
+					}
+				}
+			}
+		} catch (IOException e) {
+			// selector failed, nothing more can be serviced
+		} finally {
+			try {
+				mSelector.close();
+			} catch (IOException e) {
+				// already finished
+			}
+		}
+	}
+	
+	private void registerPending() {
+		Link link;
+		while ((link = mPending.poll()) != null) {
+			try {
+				link.comm.register(mSelector, link);
+			} catch (IOException e) {
+				drop(link, e);
+			} catch (RuntimeException e) {
+				drop(link, e);
+			}
+		}
+	}
+	
+	private void service(SelectionKey key) {
+		final Link link = (Link) key.attachment();
+		try {
+			// drain everything available before selecting again
+			int read;
+			do {
+				mBuffer.clear();
+				read = link.comm.read(mBuffer);
+				if (read > 0) {
+					mBuffer.flip();
+					link.decoder.decode(mBuffer);
+				}
+			} while (read == mBuffer.capacity());
+			
+			if (read < 0) {
+				key.cancel();
+				drop(link, null);
+			}
+		} catch (IOException e) {
+			key.cancel();
+			drop(link, e);
+		} catch (RuntimeException e) {
+			// decoder state is unknown after a throw, so the link cannot carry on
+			key.cancel();
+			drop(link, e);
+		}
+	}
+	
+	private void drop(Link link, Exception cause) {
+		mNumLinks.decrementAndGet();
+		try {
+			link.comm.close();
+		} catch (IOException e) {
+			// link is being dropped anyway
+		}
+		
+		final OnLinkDroppedListener listener = mDroppedListener;
+		if (listener != null) {
+			try {
+				listener.onLinkDropped(link.comm, cause);
+			} catch (RuntimeException e) {
+				// must not stop the loop servicing other links
+			}
+		}
+	}
+}
@@ -0,0 +1,264 @@
+package com.tronacademy.phantom.comm;
+
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.tronacademy.phantom.messaging.ProtocolDecoder;
+
+/**
+ * <p>
+ * Receives from many links at once, each link paired with its
+ * own decoder. Decoders hold per link state, so every link is
+ * only ever decoded by one thread. This keeps the bytes of a
+ * link in order and means links never contend with each other.
+ * </p>
+ *
+ * <p>
+ * In pooled mode a fixed number of workers each run a
+ * {@code ChannelReadLoop}, and each new link is pinned to the
+ * worker with the fewest links. Pooled links must be selectable.
+ * </p>
+ *
+ * <p>
+ * In thread per link mode each link gets a thread doing blocking
+ * reads. Virtual threads are used where the JVM has them,
+ * otherwise ordinary threads.
+ * </p>
+ *
+ * <p>
+ * In both modes a link which reaches end of stream, fails to read,
+ * or whose decoder or a listener behind it throws, is closed and
+ * dropped alone, and reported to any {@code OnLinkDroppedListener}.
+ * </p>
+ */
+public class LinkHub {
+
+	public enum Mode {POOLED, THREAD_PER_LINK};
+	
+	private static final String workersErrMsg = "Number of workers %d is less than 1";
+	private static final String notPooledErrMsg = "Hub is not pooled, it has no workers";
+	
+	private final Mode mMode;
+	private volatile ChannelReadLoop.OnLinkDroppedListener mDroppedListener = null;
+	
+	// pooled mode
+	private final ChannelReadLoop[] mWorkers;
+	private final Thread[] mWorkerThreads;
+	
+	// thread per link mode
+	private final List<Thread> mLinkThreads = new ArrayList<Thread>();
+	private volatile boolean mRunning = true;
+	
+	/**
+	 * Create a hub which pins links to a fixed pool of workers.
+	 *
+	 * @param workers Number of worker threads, usually the number of cores.
+	 * @throws IOException if a worker's selector cannot be opened.
+	 * @throws IllegalArgumentException if {@code workers} is less than 1.
+	 */
+	public LinkHub(int workers) throws IOException, IllegalArgumentException {
+		if (workers < 1) {
+			throw new IllegalArgumentException(String.format(workersErrMsg, workers));
+		}
+		
+		mMode = Mode.POOLED;
+		mWorkers = new ChannelReadLoop[workers];
+		mWorkerThreads = new Thread[workers];
+		for (int i=0; i<workers; i++) {
+			mWorkers[i] = new ChannelReadLoop();
+			mWorkerThreads[i] = new Thread(mWorkers[i], "LinkHub-worker-" + i);
+			mWorkerThreads[i].setDaemon(true);
+			mWorkerThreads[i].start();
+		}
+	}
+	
+	private LinkHub() {
+		mMode = Mode.THREAD_PER_LINK;
+		mWorkers = null;
+		mWorkerThreads = null;
+	}
+	
+	/**
+	 * @return A hub which reads each link on its own thread.
+	 */
+	public static LinkHub threadPerLink() {
+		return new LinkHub();
+	}
+	
+	/**
+	 * @return Flag indicating whether the JVM supports virtual threads.
+	 */
+	public static boolean hasVirtualThreads() {
+		try {
+			Thread.class.getMethod("ofVirtual");
+			return true;
+		} catch (NoSuchMethodException e) {
+			return false;
+		}
+	}
+	
+	/**
+	 * @return Mode this hub was created in.
+	 */
+	public Mode getMode() {
+		return mMode;
+	}
+	
+	/**
+	 * @param listener Told about links which were dropped, on the 
+	 *                 thread which read them. Set before adding links.
+	 */
+	public void setOnLinkDroppedListener(ChannelReadLoop.OnLinkDroppedListener listener) {
+		mDroppedListener = listener;
+		if (mMode == Mode.POOLED) {
+			for (ChannelReadLoop worker : mWorkers) {
+				worker.setOnLinkDroppedListener(listener);
+			}
+		}
+	}
+	
+	/**
+	 * Start receiving from a link.
+	 *
+	 * @param comm    Link to receive from.
+	 * @param decoder Decoder for this link only.
+	 * @throws IllegalStateException if the hub is pooled and the link is not selectable.
+	 */
+	public void addLink(ChannelCommManager comm, ProtocolDecoder decoder) throws IllegalStateException {
+		if (mMode == Mode.POOLED) {
+			// picked and added together so links added at once spread out
+			synchronized (mWorkers) {
+				ChannelReadLoop least = mWorkers[0];
+				for (ChannelReadLoop worker : mWorkers) {
+					if (worker.getNumLinks() < least.getNumLinks()) {
+						least = worker;
+					}
+				}
+				least.addLink(comm, decoder);
+			}
+		} else {
+			final Thread thread = newLinkThread(new BlockingLinkReader(comm, decoder));
+			synchronized (mLinkThreads) {
+				mLinkThreads.add(thread);
+			}
+			thread.start();
+		}
+	}
+	
+	/**
+	 * @return Number of links still being received from.
+	 */
+	public int getNumLinks() {
+		if (mMode == Mode.POOLED) {
+			int links = 0;
+			for (ChannelReadLoop worker : mWorkers) {
+				links += worker.getNumLinks();
+			}
+			return links;
+		} else {
+			synchronized (mLinkThreads) {
+				return mLinkThreads.size();
+			}
+		}
+	}
+	
+	/**
+	 * @param worker Index of a worker, from 0.
+	 * @return Number of links pinned to the worker.
+	 * @throws IllegalStateException if the hub is not pooled.
+	 */
+	public int getNumLinks(int worker) throws IllegalStateException {
+		if (mMode != Mode.POOLED) {
+			throw new IllegalStateException(notPooledErrMsg);
+		}
+		return mWorkers[worker].getNumLinks();
+	}
+	
+	/**
+	 * Stop all workers. In thread per link mode, threads finish once
+	 * their blocking read returns, close links to make them return.
+	 */
+	public void shutdown() {
+		mRunning = false;
+		if (mMode == Mode.POOLED) {
+			for (ChannelReadLoop worker : mWorkers) {
+				worker.stop();
+			}
+		} else {
+			synchronized (mLinkThreads) {
+				for (Thread thread : mLinkThreads) {
+					thread.interrupt();
+				}
+			}
+		}
+	}
+	
+	private static Thread newLinkThread(Runnable reader) {
+		try {
+			// Thread.ofVirtual().unstarted(reader), looked up at run time
+			final Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+			final Method unstarted = Class.forName("java.lang.Thread$Builder")
+					.getMethod("unstarted", Runnable.class);
+			return (Thread) unstarted.invoke(builder, reader);
+		} catch (Exception e) {
+			// no virtual threads on this JVM
+			final Thread thread = new Thread(reader, "LinkHub-link");
+			thread.setDaemon(true);
+			return thread;
+		}
+	}
+	
+	private class BlockingLinkReader implements Runnable {
+		private final ChannelCommManager mComm;
+		private final ProtocolDecoder mDecoder;
+		private final ByteBuffer mBuffer = ByteBuffer.allocate(ChannelReadLoop.DEFAULT_BUFFER_SIZE);
+		
+		BlockingLinkReader(ChannelCommManager comm, ProtocolDecoder decoder) {
+			mComm = comm;
+			mDecoder = decoder;
+		}
+		
+		@Override
+		public void run() {
+			Exception cause = null;
+			try {
+				while (mRunning) {
+					mBuffer.clear();
+					if (mComm.read(mBuffer) < 0) {
+						break;
+					}
+					mBuffer.flip();
+					mDecoder.decode(mBuffer);
+				}
+			} catch (IOException e) {
+				// link failed or was closed
+				cause = e;
+			} catch (RuntimeException e) {
+				// decoder state is unknown after a throw, so the link cannot carry on
+				cause = e;
+			} finally {
+				try {
+					mComm.close();
+				} catch (IOException e) {
+					// link is being dropped anyway
+				}
+				synchronized (mLinkThreads) {
+					mLinkThreads.remove(Thread.currentThread());
+				}
+			}
+			
+			// links closed by shutdown are not reported
+			final ChannelReadLoop.OnLinkDroppedListener listener = mDroppedListener;
+			if (listener != null && mRunning) {
+				try {
+					listener.onLinkDropped(mComm, cause);
+				} catch (RuntimeException e) {
+					// the link is already dropped
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,323 @@
+package com.tronacademy.phantom.messaging;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import com.tronacademy.phantom.messaging.ProtocolAssembler.DataType;
+import com.tronacademy.phantom.messaging.ProtocolDecoder.ErrorType;
+import com.tronacademy.phantom.messaging.ProtocolDecoder.ProtocolDecodeListener;
+import com.tronacademy.phantom.messaging.ProtocolDecoder.RequestType;
+
+/**
+ * <p>
+ * Decode listener which moves events off the decode thread.
+ * Set it as the decoder's listener and it queues each event
+ * in a bounded ring, then delivers it to the wrapped listener
+ * on another thread. A slow listener then no longer holds up
+ * the reading of bytes from the link.
+ * </p>
+ *
+ * <p>
+ * The ring is lock free with a single producer and a single
+ * consumer. Only one decoder thread may post events, and only
+ * one thread may deliver them, either by running this as a
+ * {@code Runnable} or by calling {@link #dispatchPending()}.
+ * </p>
+ *
+ * <p>
+ * What happens when the consumer falls behind is set for each
+ * data type with {@link #setPolicy(DataType, Policy)}:
+ * <ul>
+ * 	<li>LATEST: Only the most recent values of each channel slice
+ * 	    are kept, older ones are overwritten. Channels only.</li>
+ * 	<li>BLOCK: The decode thread waits for room in the ring.</li>
+ * 	<li>SIGNAL: The event is dropped, and the consumer reports
+ * 	    {@code NET_BUFFER_FULL} through {@code onError} with the
+ * 	    number of events dropped as the code. Dropped bitmaps
+ * 	    taken from a pool are recycled.</li>
+ * </ul>
+ * By default channels use LATEST and everything else BLOCK.
+ * Channel slices under LATEST are not ordered with respect to
+ * other events.
+ * </p>
+ */
+public class AsyncDecodeDispatcher implements ProtocolDecodeListener, Runnable {
+
+	public enum Policy {LATEST, BLOCK, SIGNAL};
+	
+	public static final int DEFAULT_CAPACITY = 256;
+	
+	private static final String latestErrMsg = "LATEST policy only applies to channel data, not %s";
+	
+	// how long idle threads sleep between checks
+	private static final long PARK_NANOS = 100000L;
+	
+	// channel slices are keyed by first channel, which is a multiple of the payload length
+	private static final int SLICE_LEN = ChannelStateTable.SLICE_LEN;
+	private static final int SLICES = ChannelStateTable.CHANNELS / SLICE_LEN;
+	
+	private enum Kind {CHANNELS, COMMANDS, BITMAP, REQUEST, ERROR};
+	
+	/**
+	 * Slot of the ring, reused for every event that passes through it.
+	 */
+	private static final class Event {
+		Kind kind;
+		int code;
+		Object data;
+		TransactionError error;
+		RequestType request;
+		ErrorType errorType;
+	}
+	
+	private final ProtocolDecodeListener mListener;
+	private final Policy[] mPolicies = new Policy[DataType.values().length];
+	
+	// single producer single consumer ring
+	private final Event[] mRing;
+	private final int mMask;
+	private final AtomicLong mHead = new AtomicLong();
+	private final AtomicLong mTail = new AtomicLong();
+	
+	// events dropped under SIGNAL policy, not yet reported
+	private final AtomicInteger mDropped = new AtomicInteger();
+	
+	// latest channel values, each slice is stored whole so it is never seen half written
+	private final ChannelStateTable mLatest = new ChannelStateTable();
+	private final AtomicIntegerArray mSliceDirty = new AtomicIntegerArray(SLICES);
+	private volatile boolean mAnyDirty = false;
+	
+	private volatile boolean mRunning = true;
+	
+	/**
+	 * @param listener Listener to deliver events to.
+	 */
+	public AsyncDecodeDispatcher(ProtocolDecodeListener listener) {
+		this(listener, DEFAULT_CAPACITY);
+	}
+	
+	/**
+	 * @param listener Listener to deliver events to.
+	 * @param capacity Number of events the ring holds, rounded up to a power of two.
+	 */
+	public AsyncDecodeDispatcher(ProtocolDecodeListener listener, int capacity) {
+		mListener = listener;
+		
+		int size = 1;
+		while (size < capacity) {
+			size <<= 1;
+		}
+		mRing = new Event[size];
+		for (int i=0; i<size; i++) {
+			mRing[i] = new Event();
+		}
+		mMask = size - 1;
+		
+		for (DataType type : DataType.values()) {
+			mPolicies[type.ordinal()] = Policy.BLOCK;
+		}
+		mPolicies[DataType.CHANNEL.ordinal()] = Policy.LATEST;
+	}
+	
+	/**
+	 * @param type   Data type to set policy of.
+	 * @param policy What to do with events of this type when the ring is full.
+	 * @throws IllegalArgumentException if LATEST is given for data other than channels.
+	 */
+	public void setPolicy(DataType type, Policy policy) throws IllegalArgumentException {
+		if (policy == Policy.LATEST && type != DataType.CHANNEL) {
+			throw new IllegalArgumentException(String.format(latestErrMsg, type));
+		}
+		mPolicies[type.ordinal()] = policy;
+	}
+	
+	/**
+	 * @param type Data type to query.
+	 * @return What is done with events of this type when the ring is full.
+	 */
+	public Policy getPolicy(DataType type) {
+		return mPolicies[type.ordinal()];
+	}
+	
+	/**
+	 * @return Number of events waiting in the ring.
+	 */
+	public int getPending() {
+		return (int) (mTail.get() - mHead.get());
+	}
+	
+	@Override
+	public void onRecvChannels(int startChan, byte[] values) {
+		if (mPolicies[DataType.CHANNEL.ordinal()] == Policy.LATEST) {
+			final int slice = (startChan & 0xFF) / SLICE_LEN;
+			if (values.length >= SLICE_LEN) {
+				mLatest.update(startChan, values, 0);
+			} else {
+				mLatest.update(startChan, Arrays.copyOf(values, SLICE_LEN), 0);
+			}
+			// flagged after the slice is stored, so the consumer reads it at least this new
+			mSliceDirty.set(slice, 1);
+			mAnyDirty = true;
+		} else {
+			final Event event = claim(DataType.CHANNEL);
+			if (event != null) {
+				event.kind = Kind.CHANNELS;
+				event.code = startChan;
+				event.data = values;
+				publish();
+			}
+		}
+	}
+	
+	@Override
+	public void onRecvCommands(String command, TransactionError error) {
+		final Event event = claim(DataType.COMMAND);
+		if (event != null) {
+			event.kind = Kind.COMMANDS;
+			event.data = command;
+			event.error = error;
+			publish();
+		}
+	}
+	
+	@Override
+	public void onRecvBitmap(PBitmap bmp, TransactionError error) {
+		final Event event = claim(DataType.IMAGE);
+		if (event != null) {
+			event.kind = Kind.BITMAP;
+			event.data = bmp;
+			event.error = error;
+			publish();
+		} else {
+			// dropped, hand a pooled store back rather than drain the pool
+			bmp.recycle();
+		}
+	}
+	
+	@Override
+	public void onRequest(RequestType request, int code) {
+		// requests and errors are rare and must not be lost
+		final Event event = claim(null);
+		event.kind = Kind.REQUEST;
+		event.request = request;
+		event.code = code;
+		publish();
+	}
+	
+	@Override
+	public void onError(ErrorType error, int code) {
+		final Event event = claim(null);
+		event.kind = Kind.ERROR;
+		event.errorType = error;
+		event.code = code;
+		publish();
+	}
+	
+	/**
+	 * Deliver all events waiting so far to the wrapped listener,
+	 * on the calling thread.
+	 *
+	 * @return Number of events delivered.
+	 */
+	public int dispatchPending() {
+		int delivered = 0;
+		
+		final int dropped = mDropped.getAndSet(0);
+		if (dropped > 0) {
+			mListener.onError(ErrorType.NET_BUFFER_FULL, dropped);
+			delivered++;
+		}
+		
+		if (mAnyDirty) {
+			mAnyDirty = false;
+			for (int slice=0; slice<SLICES; slice++) {
+				if (mSliceDirty.getAndSet(slice, 0) != 0) {
+					mListener.onRecvChannels(slice * SLICE_LEN, readSlice(slice));
+					delivered++;
+				}
+			}
+		}
+		
+		long head = mHead.get();
+		final long tail = mTail.get();
+		while (head < tail) {
+			final Event event = mRing[(int) head & mMask];
+			deliver(event);
+			
+			// release references before handing the slot back
+			event.data = null;
+			event.error = null;
+			mHead.lazySet(++head);
+			delivered++;
+		}
+		return delivered;
+	}
+	
+	/**
+	 * Deliver events until {@link #stop()} is called.
+	 */
+	@Override
+	public void run() {
+		while (mRunning) {
+			if (dispatchPending() == 0) {
+				LockSupport.parkNanos(PARK_NANOS);
+			}
+		}
+		dispatchPending();
+	}
+	
+	/**
+	 * Ask {@link #run()} to return after delivering what is left.
+	 */
+	public void stop() {
+		mRunning = false;
+	}
+	
+	/**
+	 * @return Free slot of the ring to fill, or null if the event was dropped.
+	 */
+	private Event claim(DataType type) {
+		final long tail = mTail.get();
+		while (tail - mHead.get() >= mRing.length) {
+			if (type != null && mPolicies[type.ordinal()] == Policy.SIGNAL) {
+				mDropped.incrementAndGet();
+				return null;
+			}
+			LockSupport.parkNanos(PARK_NANOS);
+		}
+		return mRing[(int) tail & mMask];
+	}
+	
+	private void publish() {
+		mTail.lazySet(mTail.get() + 1);
+	}
+	
+	private byte[] readSlice(int slice) {
+		final byte[] values = new byte[SLICE_LEN];
+		mLatest.readSlice(slice * SLICE_LEN, values, 0);
+		return values;
+	}
+	
+	private void deliver(Event event) {
+		switch (event.kind) {
+		case CHANNELS:
+			mListener.onRecvChannels(event.code, (byte[]) event.data);
+			break;
+		case COMMANDS:
+			mListener.onRecvCommands((String) event.data, event.error);
+			break;
+		case BITMAP:
+			mListener.onRecvBitmap((PBitmap) event.data, event.error);
+			break;
+		case REQUEST:
+			mListener.onRequest(event.request, event.code);
+			break;
+		case ERROR:
+			mListener.onError(event.errorType, event.code);
+			break;
+		}
+	}
+}
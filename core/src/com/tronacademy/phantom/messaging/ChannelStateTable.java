@@ -0,0 +1,120 @@
+package com.tronacademy.phantom.messaging;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * <p>
+ * Latest received value of every channel, for consumers which
+ * only care about current stick and servo positions rather than
+ * every channel frame. A decoder writes received channel slices
+ * into the table and readers poll it at their own rate.
+ * </p>
+ *
+ * <p>
+ * Channels are stored in slices of 8, each packed into one long,
+ * so a slice is always read whole. Reading the whole table is
+ * guarded by a version number which is odd while a slice is
+ * being written, readers retry if it changed during the read.
+ * Readers never block the writer and never allocate.
+ * </p>
+ *
+ * <p>
+ * Only one thread may write to a table, normally the thread
+ * running its decoder. Any number of threads may read it.
+ * </p>
+ */
+public class ChannelStateTable {
+
+	public static final int CHANNELS = 256;
+	public static final int SLICE_LEN = Long.SIZE / Byte.SIZE;
+	
+	private static final int SLICES = CHANNELS / SLICE_LEN;
+	
+	private final AtomicLongArray mSlices = new AtomicLongArray(SLICES);
+	private final AtomicLongArray mStamps = new AtomicLongArray(SLICES);
+	private final AtomicLong mVersion = new AtomicLong();
+	
+	/**
+	 * Write a slice of channels, stamped with the current time.
+	 *
+	 * @param startChan First channel of the slice, rounded down to a multiple of 8.
+	 * @param values    Buffer holding the channel values.
+	 * @param offset    Index of the first value in {@code values}.
+	 */
+	public void update(int startChan, byte[] values, int offset) {
+		final int slice = (startChan & (CHANNELS - 1)) / SLICE_LEN;
+		
+		long packed = 0;
+		for (int i=0; i<SLICE_LEN; i++) {
+			packed = (packed << Byte.SIZE) | (values[offset + i] & 0xFF);
+		}
+		
+		mVersion.incrementAndGet();
+		mSlices.set(slice, packed);
+		mStamps.set(slice, System.nanoTime());
+		mVersion.incrementAndGet();
+	}
+	
+	/**
+	 * @param channel Index of channel to read.
+	 * @return Latest value of the channel, 0 if never received.
+	 */
+	public byte getChannel(int channel) {
+		final long packed = mSlices.get(channel / SLICE_LEN);
+		final int shift = (SLICE_LEN - 1 - (channel % SLICE_LEN)) * Byte.SIZE;
+		return (byte) (packed >>> shift);
+	}
+	
+	/**
+	 * Read one slice of channels. A slice is stored as one value,
+	 * so it is always consistent without retrying.
+	 *
+	 * @param startChan First channel of the slice, rounded down to a multiple of 8.
+	 * @param dst       Array to copy the 8 channel values to.
+	 * @param offset    Index in {@code dst} of the first value.
+	 */
+	public void readSlice(int startChan, byte[] dst, int offset) {
+		final long packed = mSlices.get((startChan & (CHANNELS - 1)) / SLICE_LEN);
+		for (int i=0; i<SLICE_LEN; i++) {
+			dst[offset + i] = (byte) (packed >>> ((SLICE_LEN - 1 - i) * Byte.SIZE));
+		}
+	}
+	
+	/**
+	 * @param channel Index of channel to query.
+	 * @return {@code System.nanoTime()} when the channel was last received, 0 if never.
+	 */
+	public long getLastUpdate(int channel) {
+		return mStamps.get(channel / SLICE_LEN);
+	}
+	
+	/**
+	 * @return Number which changes every time a slice is written.
+	 */
+	public long getVersion() {
+		return mVersion.get();
+	}
+	
+	/**
+	 * Read a consistent snapshot of the first channels of the table.
+	 *
+	 * @param dst Array to copy channel values to, up to 256 are read.
+	 * @return Version of the table the snapshot was taken at.
+	 */
+	public long read(byte[] dst) {
+		final int len = Math.min(dst.length, CHANNELS);
+		long version;
+		do {
+			version = mVersion.get();
+			for (int slice=0; slice*SLICE_LEN<len; slice++) {
+				final long packed = mSlices.get(slice);
+				final int end = Math.min(len, (slice+1) * SLICE_LEN);
+				for (int i=end-1; i>=slice*SLICE_LEN; i--) {
+					dst[i] = (byte) (packed >>> ((SLICE_LEN - 1 - (i % SLICE_LEN)) * Byte.SIZE));
+				}
+			}
+		} while ((version & 1) != 0 || version != mVersion.get());
+		return version;
+	}
+}
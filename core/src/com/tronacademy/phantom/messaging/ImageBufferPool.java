@@ -0,0 +1,122 @@
+package com.tronacademy.phantom.messaging;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+
+/**
+ * <p>
+ * Pool of pixel stores for images which arrive continuously,
+ * so that receiving an image does not allocate one. Buffers
+ * are kept in buckets by size, each a power of two, and an
+ * image takes a buffer from the smallest bucket that fits it.
+ * </p>
+ *
+ * <p>
+ * Bitmaps created with {@link PBitmap#fromPool(ImageBufferPool, PBitmap.Encoding, int, int)}
+ * own their buffer until {@link PBitmap#recycle()} hands it back. Buffers
+ * not handed back are simply collected.
+ * </p>
+ *
+ * <p>
+ * Buffers may be taken and handed back from any thread.
+ * </p>
+ */
+public class ImageBufferPool {
+
+	public static final int DEFAULT_BUFFERS_PER_SIZE = 4;
+	
+	private static final String sizeErrMsg = "Buffer of %d bytes is not from a pool";
+	
+	// smallest bucket, 1 KiB
+	private static final int MIN_SHIFT = 10;
+	private static final int BUCKETS = Integer.SIZE - MIN_SHIFT;
+	
+	private final ArrayDeque<ByteBuffer>[] mBuckets;
+	private final int mBuffersPerSize;
+	
+	// statistics
+	private long mAllocated = 0;
+	private long mReused = 0;
+	
+	public ImageBufferPool() {
+		this(DEFAULT_BUFFERS_PER_SIZE);
+	}
+	
+	/**
+	 * @param buffersPerSize Most buffers kept of each size, extra ones handed back are dropped.
+	 */
+	@SuppressWarnings({"unchecked", "rawtypes"})
+	public ImageBufferPool(int buffersPerSize) {
+		mBuffersPerSize = buffersPerSize;
+		mBuckets = new ArrayDeque[BUCKETS];
+		for (int i=0; i<BUCKETS; i++) {
+			mBuckets[i] = new ArrayDeque<ByteBuffer>();
+		}
+	}
+	
+	/**
+	 * Take a buffer of at least the given size, allocating
+	 * one if the pool has none.
+	 *
+	 * @param size Number of bytes needed.
+	 * @return Heap buffer with a power of two capacity, position zero and limit {@code size}.
+	 */
+	public ByteBuffer acquire(int size) {
+		final int bucket = bucketOf(size);
+		ByteBuffer buffer;
+		synchronized (this) {
+			buffer = mBuckets[bucket].pollFirst();
+			if (buffer != null) {
+				mReused++;
+			} else {
+				mAllocated++;
+			}
+		}
+		
+		if (buffer == null) {
+			buffer = ByteBuffer.allocate(1 << (bucket + MIN_SHIFT));
+		}
+		buffer.clear();
+		buffer.limit(size);
+		return buffer;
+	}
+	
+	/**
+	 * Hand a buffer back to the pool. It must not be used afterwards.
+	 *
+	 * @param buffer Buffer taken by {@link #acquire(int)}.
+	 * @throws IllegalArgumentException if the buffer is not a size the pool hands out.
+	 */
+	public void release(ByteBuffer buffer) throws IllegalArgumentException {
+		final int capacity = buffer.capacity();
+		if (Integer.bitCount(capacity) != 1 || capacity < (1 << MIN_SHIFT)) {
+			throw new IllegalArgumentException(String.format(sizeErrMsg, capacity));
+		}
+		
+		final int bucket = Integer.numberOfTrailingZeros(capacity) - MIN_SHIFT;
+		synchronized (this) {
+			if (mBuckets[bucket].size() < mBuffersPerSize) {
+				mBuckets[bucket].addFirst(buffer);
+			}
+		}
+	}
+	
+	/**
+	 * @return Number of buffers the pool had to allocate.
+	 */
+	public synchronized long getAllocated() {
+		return mAllocated;
+	}
+	
+	/**
+	 * @return Number of buffers handed out again after being handed back.
+	 */
+	public synchronized long getReused() {
+		return mReused;
+	}
+	
+	private static int bucketOf(int size) {
+		final int shift = Integer.SIZE - Integer.numberOfLeadingZeros(Math.max(size, 1) - 1);
+		return Math.max(shift - MIN_SHIFT, 0);
+	}
+}
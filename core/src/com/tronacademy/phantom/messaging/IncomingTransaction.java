@@ -15,6 +15,7 @@ public class IncomingTransaction {
 	private DataType mType;
 	private int mTotalPackets;
 	private int mPacketsToGo;
+	private TransactionError mErrors = null;
 	
 	/**
 	 * @param type    Type of data being decoded.
@@ -66,10 +67,20 @@ public class IncomingTransaction {
 	}
 	
 	/**
-	 * @return A list of errors that occurred during transaction.
+	 * @return A list of errors that occurred during transaction, null if none.
 	 */
 	public TransactionError getTransactionErrors() {
-		return null;
+		return mErrors;
+	}
+	
+	/**
+	 * @return Error counts of this transaction, created on first use so errors can be counted.
+	 */
+	public TransactionError trackErrors() {
+		if (mErrors == null) {
+			mErrors = new TransactionError(this);
+		}
+		return mErrors;
 	}
 
 }
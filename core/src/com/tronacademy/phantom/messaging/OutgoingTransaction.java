@@ -0,0 +1,188 @@
+package com.tronacademy.phantom.messaging;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * <p>
+ * Handler for an outgoing transmission process.
+ * </p>
+ * 
+ * <p>
+ * Protocols may subclass this to hold packets in a 
+ * compact form and encode them straight into the 
+ * destination buffer with {@link #encodeTo(ByteBuffer)}.
+ * </p>
+ * 
+ * @author George Xian
+ * @since 2015-05-04
+ */
+public class OutgoingTransaction {
+	
+	private final Queue<ByteArrayOutputStream> mOutgoingStream;
+	private final int mJobSize;
+	
+	private final int mPriority;
+	private final String mName;
+	
+	/**
+	 * The queue of byte streams to transmit over the network.
+	 * 
+	 * @param name     String name of the transaction process.
+	 * @param stream   Byte stream to transmit.
+	 * @param priority Priority of the transmission (lower is higher)
+	 */
+	public OutgoingTransaction(String name, Queue<ByteArrayOutputStream> stream, int priority) {
+		mOutgoingStream = stream;
+		mJobSize = mOutgoingStream.size();
+		
+		mPriority = priority;
+		mName = name;
+	}
+	
+	public OutgoingTransaction(OutgoingTransaction trans) {
+		mJobSize = trans.mJobSize;
+		// TODO: clone() is not working
+		mOutgoingStream = new LinkedBlockingQueue<ByteArrayOutputStream>(trans.showContents());
+		
+		mName = trans.mName;
+		mPriority = trans.mPriority;
+		
+	}
+	
+	/**
+	 * For subclasses which hold their own packets.
+	 * 
+	 * @param name     String name of the transaction process.
+	 * @param packets  Number of packets in the transaction.
+	 * @param priority Priority of the transmission (lower is higher)
+	 */
+	protected OutgoingTransaction(String name, int packets, int priority) {
+		mOutgoingStream = null;
+		mJobSize = packets;
+		
+		mPriority = priority;
+		mName = name;
+	}
+	
+	/**
+	 * @return String name for this transaction.
+	 */
+	public String getName() {
+		return mName;
+	}
+	
+	/**
+	 * @return Priority for this transaction.
+	 */
+	public int getPriority() {
+		return mPriority;
+	}
+	
+	/**
+	 * @return Number of packets left to transmit.
+	 */
+	public int getNumPackets() {
+		return mOutgoingStream.size();
+	}
+	
+	/**
+	 * @return Flag indicating whether transaction is complete.
+	 */
+	public boolean hasComplete() {
+		return getNumPackets() == 0;
+	}
+	
+	/**
+	 * @return Next byte stream of this transaction to transmit, null if complete.
+	 */
+	public InputStream getNext() {
+		final ByteArrayOutputStream next = mOutgoingStream.poll();
+		return (next != null) ? new ByteArrayInputStream(next.toByteArray()) : null;
+	}
+	
+	/**
+	 * Write the next packet in serialized form into a buffer.
+	 * 
+	 * @param dst Buffer to write to, from its current position.
+	 * @return Flag indicating whether a packet was written, false if 
+	 *         complete or there is not enough room in {@code dst}.
+	 */
+	public boolean encodeNextTo(ByteBuffer dst) {
+		final ByteArrayOutputStream next = mOutgoingStream.peek();
+		if (next == null || next.size() > dst.remaining()) {
+			return false;
+		}
+		dst.put(next.toByteArray());
+		mOutgoingStream.poll();
+		return true;
+	}
+	
+	/**
+	 * <p>
+	 * Write as many of the remaining packets as fit into a buffer,
+	 * in serialized form. Packets are never split across calls.
+	 * </p>
+	 * 
+	 * @param dst Buffer to write to, from its current position.
+	 * @return Number of packets written.
+	 */
+	public int encodeTo(ByteBuffer dst) {
+		int written = 0;
+		while (encodeNextTo(dst)) {
+			written++;
+		}
+		return written;
+	}
+	
+	/**
+	 * <p>
+	 * Write the rest of this transaction to a channel, encoding 
+	 * it in batches through a caller supplied buffer. Intended 
+	 * for blocking channels.
+	 * </p>
+	 * 
+	 * @param channel Channel to write to.
+	 * @param buffer  Staging buffer, must fit at least one packet.
+	 * @return Number of bytes written.
+	 * @throws IOException if the channel fails to write.
+	 * @throws IllegalArgumentException if a packet does not fit in {@code buffer}.
+	 */
+	public long encodeTo(WritableByteChannel channel, ByteBuffer buffer) 
+			throws IOException, IllegalArgumentException {
+		long total = 0;
+		while (!hasComplete()) {
+			buffer.clear();
+			if (encodeTo(buffer) == 0) {
+				throw new IllegalArgumentException("Buffer too small to hold a packet");
+			}
+			buffer.flip();
+			while (buffer.hasRemaining()) {
+				total += channel.write(buffer);
+			}
+		}
+		return total;
+	}
+	
+	/**
+	 * @return Completion of this transaction in percent.
+	 */
+	public int getProgress() {
+		return (mJobSize > 0) ? 100*getNumPackets() / mJobSize : 0;
+	}
+
+	/**
+	 * @return A copy of the contents of this transaction.
+	 */
+	public List<ByteArrayOutputStream> showContents() {
+		 return new ArrayList<ByteArrayOutputStream>(mOutgoingStream);
+	}
+}
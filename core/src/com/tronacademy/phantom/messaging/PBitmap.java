@@ -0,0 +1,310 @@
+package com.tronacademy.phantom.messaging;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * <p>
+ * Custom bitmap class to make bitmaps portable.
+ * </p>
+ * 
+ * <p>
+ * Mostly follows standard bitmap implementation for
+ * both {@code java.awt.BufferedImage} and 
+ * {@code android.graphics.Bitmap}. 
+ * </p>
+ * 
+ * <p>
+ * The encoding specifies how the data is stored. Pixels are
+ * held in a byte store sized for the encoding, 2 bytes per
+ * pixel for RGB565 and 4 for ARGB8888, row major and big
+ * endian. This is the pixel stream as sent over the link, 
+ * so {@link #asByteBuffer()} can be read without copying.
+ * </p>
+ * 
+ * <p>
+ * Bitmaps taken from an {@link ImageBufferPool} own a pooled 
+ * store, which {@link #recycle()} hands back once the bitmap
+ * is no longer needed.
+ * </p>
+ * 
+ * @author George Xian
+ * @since 2015-05-16
+ *
+ */
+public class PBitmap {
+	
+	public enum Encoding {RGB565, ARGB8888};
+	
+	private static final String sizeErrMsg = "Width or height for image cannot be less than 1";
+	
+	private final ByteBuffer mStore;
+	private final Encoding mEnc;
+	
+	// pool the store was taken from, null if not pooled
+	private final ImageBufferPool mPool;
+	private final ByteBuffer mPooled;
+	private boolean mRecycled = false;
+	private final int mWidth;
+	private final int mHeight;
+	
+	/**
+	 * <p>
+	 * Image from packed ints. For ARGB8888 each int is one pixel,
+	 * for RGB565 each int holds two pixels, the first in its
+	 * upper half.
+	 * </p>
+	 * 
+	 * @param colors   Packed int representation of pixel data.
+	 * @param width    Width of image in pixels.
+	 * @param height   Height of image in pixels.
+	 * @param encoding Encoding of pixel data in {@code colors} array.
+	 * @throws NegativeArraySizeException if negative was specified for width or height.
+	 */
+	public PBitmap(int[] colors, Encoding encoding, int width, int height) 
+			throws NegativeArraySizeException {
+		this(encoding, width, height);
+		
+		final int size = mStore.capacity();
+		int index = 0;
+		for (int i=0; i<colors.length && index<size; i++) {
+			final int data = colors[i];
+			for (int shift=24; shift>=0 && index<size; shift-=Byte.SIZE) {
+				mStore.put(index++, (byte) ((data >>> shift) & 0xFF));
+			}
+		}
+	}
+	
+	/**
+	 * RGB565 image with one pixel per short.
+	 * 
+	 * @param colors RGB565 pixel data.
+	 * @param width  Width of image in pixels.
+	 * @param height Height of image in pixels.
+	 * @throws NegativeArraySizeException if negative was specified for width or height.
+	 */
+	public PBitmap(short[] colors, int width, int height) throws NegativeArraySizeException {
+		this(Encoding.RGB565, width, height);
+		
+		final int len = Math.min(colors.length, width * height);
+		mStore.asShortBuffer().put(colors, 0, len);
+	}
+	
+	/**
+	 * Image copied from a pixel stream. A direct buffer is copied
+	 * to a direct store, so the pixels stay outside the heap.
+	 * 
+	 * @param pixels   Pixel stream from its position, as returned by {@link #asByteBuffer()}.
+	 * @param encoding Encoding of the pixel stream.
+	 * @param width    Width of image in pixels.
+	 * @param height   Height of image in pixels.
+	 * @throws NegativeArraySizeException if negative was specified for width or height.
+	 */
+	public PBitmap(ByteBuffer pixels, Encoding encoding, int width, int height) 
+			throws NegativeArraySizeException {
+		this(encoding, width, height, pixels.isDirect());
+		
+		final ByteBuffer src = pixels.duplicate();
+		if (src.remaining() > mStore.capacity()) {
+			src.limit(src.position() + mStore.capacity());
+		}
+		mStore.duplicate().put(src);
+	}
+	
+	/**
+	 * Blank image to be filled through {@link #asByteBuffer()}.
+	 * 
+	 * @param encoding Encoding of the image.
+	 * @param width    Width of image in pixels.
+	 * @param height   Height of image in pixels.
+	 * @throws NegativeArraySizeException if negative was specified for width or height.
+	 */
+	public PBitmap(Encoding encoding, int width, int height) throws NegativeArraySizeException {
+		this(encoding, width, height, false);
+	}
+	
+	/**
+	 * Blank image to be filled through {@link #asByteBuffer()}.
+	 * 
+	 * @param encoding Encoding of the image.
+	 * @param width    Width of image in pixels.
+	 * @param height   Height of image in pixels.
+	 * @param direct   Flag indicating whether pixels are held in a direct buffer.
+	 * @throws NegativeArraySizeException if negative was specified for width or height.
+	 */
+	public PBitmap(Encoding encoding, int width, int height, boolean direct) 
+			throws NegativeArraySizeException {
+		
+		if (width < 1 || height < 1) {
+			throw new NegativeArraySizeException(sizeErrMsg); 
+		}
+		mWidth = width;
+		mHeight = height;
+		mEnc = encoding;
+		
+		final int size = width * height * getBytesPerPixel(encoding);
+		mStore = direct ? ByteBuffer.allocateDirect(size) : ByteBuffer.allocate(size);
+		mPool = null;
+		mPooled = null;
+	}
+	
+	private PBitmap(ImageBufferPool pool, ByteBuffer pooled, Encoding encoding, int width, int height) {
+		mWidth = width;
+		mHeight = height;
+		mEnc = encoding;
+		
+		// store is the part of the pooled buffer the image needs
+		mStore = pooled.slice();
+		mPool = pool;
+		mPooled = pooled;
+	}
+	
+	/**
+	 * Blank image which takes its store from a pool instead of
+	 * allocating one, to be filled through {@link #asByteBuffer()}.
+	 * The store is not cleared, it may hold an earlier image.
+	 * 
+	 * @param pool     Pool to take the store from.
+	 * @param encoding Encoding of the image.
+	 * @param width    Width of image in pixels.
+	 * @param height   Height of image in pixels.
+	 * @return Image which owns a pooled store until recycled.
+	 * @throws NegativeArraySizeException if negative was specified for width or height.
+	 */
+	public static PBitmap fromPool(ImageBufferPool pool, Encoding encoding, int width, int height) 
+			throws NegativeArraySizeException {
+		if (width < 1 || height < 1) {
+			throw new NegativeArraySizeException(sizeErrMsg); 
+		}
+		
+		final ByteBuffer pooled = pool.acquire(width * height * getBytesPerPixel(encoding));
+		return new PBitmap(pool, pooled, encoding, width, height);
+	}
+	
+	/**
+	 * @return Flag indicating whether the store was taken from a pool.
+	 */
+	public boolean isPooled() {
+		return mPool != null;
+	}
+	
+	/**
+	 * Hand the store back to the pool it was taken from. 
+	 * Neither this bitmap nor any view of it may be used 
+	 * afterwards. Does nothing for bitmaps not from a pool,
+	 * or if already recycled.
+	 */
+	public void recycle() {
+		if (mPool == null) {
+			return;
+		}
+		synchronized (this) {
+			if (mRecycled) {
+				return;
+			}
+			mRecycled = true;
+		}
+		mPool.release(mPooled);
+	}
+	
+	/**
+	 * @param encoding Pixel encoding.
+	 * @return Number of bytes each pixel takes up.
+	 */
+	public static int getBytesPerPixel(Encoding encoding) {
+		return (encoding == Encoding.RGB565) ? Short.SIZE / Byte.SIZE : Integer.SIZE / Byte.SIZE;
+	}
+	
+	/**
+	 * @return Encoding of image.
+	 */
+	public Encoding getEncoding() {
+		return mEnc;
+	}
+	
+	/**
+	 * @return Width of image in pixels.
+	 */
+	public int getWidth() {
+		return mWidth;
+	}
+	
+	/**
+	 * @return Height of image in pixels.
+	 */
+	public int getHeight() {
+		return mHeight;
+	}
+	
+	/**
+	 * @return Size of image in bytes.
+	 */
+	public int getSizeInBytes() {
+		return mStore.capacity();
+	}
+	
+	/**
+	 * @param x Column of pixel.
+	 * @param y Row of pixel.
+	 * @return Pixel value in the image's encoding, RGB565 in the lower 16 bits.
+	 */
+	public int getPixel(int x, int y) {
+		final int index = y * mWidth + x;
+		if (mEnc == Encoding.RGB565) {
+			return mStore.getShort(index * Short.SIZE / Byte.SIZE) & 0xFFFF;
+		}
+		return mStore.getInt(index * Integer.SIZE / Byte.SIZE);
+	}
+	
+	/**
+	 * <p>
+	 * Returns a view of the pixel stream of the image, from 
+	 * position zero to its size. The view shares the image's
+	 * store, nothing is copied. 
+	 * </p>
+	 * 
+	 * <p>
+	 * Warning: {@code PBitmap} is meant to be immutable, however
+	 * it is possible to change the image data by writing to the
+	 * view. Only do this to fill in an image before it is shared.
+	 * </p>
+	 * 
+	 * @return Pixel stream of image.
+	 */
+	public ByteBuffer asByteBuffer() {
+		return mStore.duplicate();
+	}
+	
+	/**
+	 * Serialize data into stream.
+	 * 
+	 * @return Raw stream of image.
+	 */
+	public InputStream serialize() {
+		if (mStore.hasArray()) {
+			return new ByteArrayInputStream(mStore.array(), mStore.arrayOffset(), mStore.capacity());
+		}
+		
+		final byte[] byteArray = new byte[getSizeInBytes()];
+		mStore.duplicate().get(byteArray);
+		return new ByteArrayInputStream(byteArray);
+	}
+	
+	/**
+	 * Returns the pixel data of the image as packed ints, in the 
+	 * form taken by {@link #PBitmap(int[], Encoding, int, int)}.
+	 * 
+	 * @return Copy of the pixel data of image.
+	 * @deprecated Copies the image, read {@link #asByteBuffer()} instead.
+	 */
+	@Deprecated
+	public int[] getRawData() {
+		final int size = mStore.capacity();
+		final int[] colors = new int[(size + Integer.SIZE / Byte.SIZE - 1) / (Integer.SIZE / Byte.SIZE)];
+		for (int i=0; i<size; i++) {
+			colors[i >>> 2] |= (mStore.get(i) & 0xFF) << ((3 - (i & 3)) * Byte.SIZE);
+		}
+		return colors;
+	}
+}
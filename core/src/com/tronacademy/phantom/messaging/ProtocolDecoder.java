@@ -1,5 +1,7 @@
 package com.tronacademy.phantom.messaging;
 
+import java.nio.ByteBuffer;
+
 /**
  * <p>
  * Methods common to all Phantom protocol decoders.
@@ -20,6 +22,10 @@ package com.tronacademy.phantom.messaging;
  */
 public interface ProtocolDecoder {
 	
+	/**
+	 * Polling interval in ms for links read through {@code getInputStream}.
+	 * Links serviced by a {@code ChannelReadLoop} need no polling.
+	 */
 	public final static int DEFAULT_POLLING_INT = 100;
 	
 	public enum RequestType {STOP, RESEND};
@@ -45,6 +51,25 @@ public interface ProtocolDecoder {
 	 */
 	public void decodeByte(byte read);
 	
+	/**
+	 * Interpret a chunk of bytes read from the stream. 
+	 * Equivalent to calling {@code decodeByte} on each 
+	 * byte in order, but avoids per byte overhead.
+	 * 
+	 * @param buffer Array holding bytes read from stream.
+	 * @param offset Index of first byte to interpret.
+	 * @param length Number of bytes to interpret.
+	 */
+	public void decode(byte[] buffer, int offset, int length);
+	
+	/**
+	 * Interpret all remaining bytes of a buffer read from stream. 
+	 * The buffer's position is advanced to its limit.
+	 * 
+	 * @param buffer Buffer holding bytes read from stream.
+	 */
+	public void decode(ByteBuffer buffer);
+	
 	/**
 	 * Attach custom hook to ProtocolDecoder events.
 	 * 
@@ -52,6 +77,24 @@ public interface ProtocolDecoder {
 	 */
 	public void setOnProtocolDecodeListener(ProtocolDecodeListener listener);
 	
+	/**
+	 * Write received channel data into a table of latest values.
+	 * 
+	 * @param table     Table to write to, null to stop writing.
+	 * @param callbacks Flag indicating whether {@code onRecvChannels} 
+	 *                  is still called for each channel frame.
+	 */
+	public void setChannelStateTable(ChannelStateTable table, boolean callbacks);
+	
+	/**
+	 * Take the stores of received images from a pool. Images passed
+	 * to {@code onRecvBitmap} then own a pooled store, which the
+	 * listener hands back with {@code PBitmap.recycle()} when done.
+	 * 
+	 * @param pool Pool to take stores from, null to allocate them.
+	 */
+	public void setImageBufferPool(ImageBufferPool pool);
+	
 	public interface ProtocolDecodeListener {
 		/**
 		 * Callback when channel stream data has successfully decoded.
@@ -71,6 +114,9 @@ public interface ProtocolDecoder {
 		
 		/**
 		 * Callback when a bitmap has been successfully decoded.
+		 * The listener owns the bitmap, the decoder never writes 
+		 * to it afterwards, so it may be kept or passed to another
+		 * thread.
 		 * 
 		 * @param bmp   Bitmap decoded.
 		 * @param error Handler for errors that occurred during transaction, null if no error.
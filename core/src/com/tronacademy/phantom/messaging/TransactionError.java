@@ -0,0 +1,64 @@
+package com.tronacademy.phantom.messaging;
+
+/**
+ * <p>
+ * Counts of frames rejected by a decoder while a transaction 
+ * was being received, or over the whole link when there is 
+ * no transaction. A rejected frame may have belonged to any 
+ * transaction in progress, so it is counted on each of them.
+ * </p>
+ * 
+ * <p>
+ * Counts are written by the decoding thread and may be read 
+ * from any other.
+ * </p>
+ */
+public class TransactionError {
+	
+	public final IncomingTransaction mTransaction;
+	
+	private volatile int mCrcErrors = 0;
+	private volatile int mFramingErrors = 0;
+	
+	/**
+	 * @param transaction Transaction the errors occurred during, null for the whole link.
+	 */
+	public TransactionError(IncomingTransaction transaction) {
+		mTransaction = transaction;
+	}
+	
+	/**
+	 * Count a frame whose check value did not match its contents.
+	 */
+	public void countCrcError() {
+		mCrcErrors++;
+	}
+	
+	/**
+	 * Count a frame of the wrong length.
+	 */
+	public void countFramingError() {
+		mFramingErrors++;
+	}
+	
+	/**
+	 * @return Number of frames rejected for failing their check value.
+	 */
+	public int getCrcErrors() {
+		return mCrcErrors;
+	}
+	
+	/**
+	 * @return Number of frames rejected for being the wrong length.
+	 */
+	public int getFramingErrors() {
+		return mFramingErrors;
+	}
+	
+	/**
+	 * @return Flag indicating whether any frame was rejected.
+	 */
+	public boolean hasErrors() {
+		return mCrcErrors > 0 || mFramingErrors > 0;
+	}
+}
@@ -0,0 +1,216 @@
+package com.tronacademy.phantom.messaging;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayDeque;
+import java.util.Queue;
+
+/**
+ * <p>
+ * Interleaves several live {@code OutgoingTransaction}s onto
+ * one link, one packet at a time, according to their priority.
+ * </p>
+ *
+ * <p>
+ * Priority 0 (channel streams) is strict, its packets are always
+ * sent before anything else. All other priorities share the
+ * remaining bandwidth by weight, a class with weight 4 sends
+ * four packets for every one packet of a class with weight 1.
+ * Transactions within a class take turns packet by packet.
+ * </p>
+ *
+ * <p>
+ * Since channel packets are only held back by packets already
+ * in the transmit buffer, the latency of channel streams is
+ * bounded by the time to transmit one buffer. Use small buffers
+ * to keep it low.
+ * </p>
+ */
+public class TransmitScheduler {
+
+	private static final String weightErrMsg = "Weight of priority %d must be at least 1";
+	
+	// default weights for priorities 1 (commands), 2 (images) and 3 (binary)
+	private static final int[] DEFAULT_WEIGHTS = {4, 2, 1};
+	
+	// index 0 is the strict priority class
+	private final Queue<OutgoingTransaction>[] mClasses;
+	private final int[] mWeights;
+	
+	// weighted round robin state
+	private int mCurrentClass = 1;
+	private int mCredit;
+	
+	/**
+	 * Create a scheduler with weights 4, 2 and 1 for priorities
+	 * 1 (commands), 2 (images) and 3 (binary).
+	 */
+	public TransmitScheduler() {
+		this(DEFAULT_WEIGHTS);
+	}
+	
+	/**
+	 * @param weights Share of bandwidth for each priority from 1 upwards,
+	 *                lower priorities are put in the last class.
+	 * @throws IllegalArgumentException if a weight is less than 1.
+	 */
+	@SuppressWarnings({"unchecked", "rawtypes"})
+	public TransmitScheduler(int[] weights) throws IllegalArgumentException {
+		mWeights = new int[weights.length + 1];
+		for (int i=0; i<weights.length; i++) {
+			if (weights[i] < 1) {
+				throw new IllegalArgumentException(String.format(weightErrMsg, i+1));
+			}
+			mWeights[i+1] = weights[i];
+		}
+		
+		mClasses = new Queue[mWeights.length];
+		for (int i=0; i<mClasses.length; i++) {
+			mClasses[i] = new ArrayDeque<OutgoingTransaction>();
+		}
+		
+		mCredit = (mWeights.length > 1) ? mWeights[1] : 0;
+	}
+	
+	/**
+	 * Queue a transaction for transmission.
+	 *
+	 * @param trans Transaction to transmit.
+	 */
+	public synchronized void submit(OutgoingTransaction trans) {
+		if (!trans.hasComplete()) {
+			mClasses[classOf(trans.getPriority())].add(trans);
+		}
+	}
+	
+	/**
+	 * @return Flag indicating whether there is nothing left to transmit.
+	 */
+	public synchronized boolean isIdle() {
+		for (Queue<OutgoingTransaction> queue : mClasses) {
+			if (!queue.isEmpty()) {
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	/**
+	 * @param priority Priority of transactions to query.
+	 * @return Number of packets waiting in the class of {@code priority}.
+	 */
+	public synchronized int getQueueDepth(int priority) {
+		int depth = 0;
+		for (OutgoingTransaction trans : mClasses[classOf(priority)]) {
+			depth += trans.getNumPackets();
+		}
+		return depth;
+	}
+	
+	/**
+	 * @param priority Priority of transactions to query.
+	 * @return Number of unfinished transactions in the class of {@code priority}.
+	 */
+	public synchronized int getPendingTransactions(int priority) {
+		return mClasses[classOf(priority)].size();
+	}
+	
+	/**
+	 * Fill a buffer with as many scheduled packets as fit.
+	 *
+	 * @param dst Buffer to write to, from its current position.
+	 * @return Number of packets written.
+	 */
+	public synchronized int encodeTo(ByteBuffer dst) {
+		int written = 0;
+		while (encodeNextTo(dst)) {
+			written++;
+		}
+		return written;
+	}
+	
+	/**
+	 * <p>
+	 * Write everything queued to a channel, in batches through a
+	 * caller supplied buffer. Transactions submitted from other
+	 * threads meanwhile are scheduled in the next batch. Intended
+	 * for blocking channels.
+	 * </p>
+	 *
+	 * @param channel Channel to write to.
+	 * @param buffer  Staging buffer, must fit at least one packet.
+	 * @return Number of bytes written.
+	 * @throws IOException if the channel fails to write.
+	 * @throws IllegalArgumentException if a packet does not fit in {@code buffer}.
+	 */
+	public long encodeTo(WritableByteChannel channel, ByteBuffer buffer)
+			throws IOException, IllegalArgumentException {
+		long total = 0;
+		while (true) {
+			buffer.clear();
+			// checked together so packets queued by other threads cannot look too big
+			synchronized (this) {
+				if (isIdle()) {
+					break;
+				}
+				if (encodeTo(buffer) == 0) {
+					throw new IllegalArgumentException("Buffer too small to hold a packet");
+				}
+			}
+			buffer.flip();
+			while (buffer.hasRemaining()) {
+				total += channel.write(buffer);
+			}
+		}
+		return total;
+	}
+	
+	private boolean encodeNextTo(ByteBuffer dst) {
+		// strict priority class always goes first
+		if (!mClasses[0].isEmpty()) {
+			return encodeFromClass(0, dst);
+		}
+		if (mClasses.length < 2) {
+			return false;
+		}
+		
+		// visit each weighted class at most once, plus a revisit of the current one
+		for (int visited=0; visited<mClasses.length; visited++) {
+			if (mCredit > 0 && !mClasses[mCurrentClass].isEmpty()) {
+				if (encodeFromClass(mCurrentClass, dst)) {
+					mCredit--;
+					return true;
+				}
+				// no room left in dst
+				return false;
+			}
+			nextClass();
+		}
+		return false;
+	}
+	
+	private boolean encodeFromClass(int cls, ByteBuffer dst) {
+		final Queue<OutgoingTransaction> queue = mClasses[cls];
+		final OutgoingTransaction trans = queue.peek();
+		if (trans == null || !trans.encodeNextTo(dst)) {
+			return false;
+		}
+		
+		// take turns within the class
+		queue.poll();
+		if (!trans.hasComplete()) {
+			queue.add(trans);
+		}
+		return true;
+	}
+	
+	private void nextClass() {
+		mCurrentClass = (mCurrentClass % (mClasses.length - 1)) + 1;
+		mCredit = mWeights[mCurrentClass];
+	}
+	
+	private int classOf(int priority) {
+		return Math.max(0, Math.min(priority, mClasses.length - 1));
+	}
+}
@@ -0,0 +1,130 @@
+package com.tronacademy.phantom.mixer;
+
+/**
+ * <p>
+ * Matrix mixer which uses integer arithmetic only, for
+ * targets without fast floating point. Mix co-efficients
+ * are held in Q8.8 fixed point, giving a range of
+ * [-128, 128) in steps of 1/256. Accumulators are 32 bit,
+ * which cannot overflow for up to 511 channels.
+ * </p>
+ *
+ * <p>
+ * Results are truncated towards zero like {@code MatrixMixer},
+ * so both mixers give identical outputs for co-efficients
+ * which are multiples of 1/256. Unlike {@code MatrixMixer},
+ * outputs beyond the range of a channel saturate instead of
+ * wrapping around.
+ * </p>
+ */
+public class FixedPointMixer extends Mixer {
+
+	private static final String matIndxErrMsg = "'%s' fixed point mixer has no mix co-efficient at [%d, %d]";
+	private static final String coeffRangeErrMsg = "'%s' fixed point mixer cannot hold mix co-efficient %f";
+	
+	public static final int FRACTION_BITS = 8;
+	public static final int ONE = 1 << FRACTION_BITS;
+	public static final double MAX_COEFFICIENT = (double) Short.MAX_VALUE / ONE;
+	public static final double MIN_COEFFICIENT = (double) Short.MIN_VALUE / ONE;
+	
+	// row major Q8.8 mix matrix
+	private final int[] mMixMat;
+	
+	public FixedPointMixer(int channels, String name) {
+		super(channels, name);
+		
+		mMixMat = new int[channels * channels];
+		setMixToIdentity();
+	}
+	
+	/**
+	 * Gets the mix matrix element value at specified position.
+	 *
+	 * @param row Vertical index of element to request.
+	 * @param col Horizontal index of element to request.
+	 * @return Value of co-efficient at requested position.
+	 * @throws ArrayIndexOutOfBoundsException if requested position is out of bounds.
+	 */
+	public double getMixCoefficientAt(int row, int col) throws ArrayIndexOutOfBoundsException {
+		if (row>=0 && row<getNumChans() && col>=0 && col<getNumChans()) {
+			return (double) mMixMat[row*getNumChans() + col] / ONE;
+		} else {
+			throw new ArrayIndexOutOfBoundsException(
+					String.format(matIndxErrMsg, getName(), row, col));
+		}
+	}
+	
+	/**
+	 * Set the value of the mix matrix element at specified position.
+	 * The value is rounded to the nearest multiple of 1/256.
+	 *
+	 * @param row Vertical index of element to alter.
+	 * @param col Horizontal index of element to alter.
+	 * @param val Value to set mix-coefficient to.
+	 * @throws ArrayIndexOutOfBoundsException if specified position is out of bounds.
+	 * @throws IllegalArgumentException if value is outside the fixed point range.
+	 */
+	public void setMixCoefficient(int row, int col, double val) throws
+	ArrayIndexOutOfBoundsException, IllegalArgumentException {
+		if (!(row>=0 && row<getNumChans() && col>=0 && col<getNumChans())) {
+			throw new ArrayIndexOutOfBoundsException(
+					String.format(matIndxErrMsg, getName(), row, col));
+		}
+		if (!(val>=MIN_COEFFICIENT && val<=MAX_COEFFICIENT)) {
+			throw new IllegalArgumentException(
+					String.format(coeffRangeErrMsg, getName(), val));
+		}
+		mMixMat[row*getNumChans() + col] = (int) Math.round(val * ONE);
+	}
+	
+	/**
+	 * Makes the mix matrix an identity matrix.
+	 */
+	public void setMixToIdentity() {
+		final int n = getNumChans();
+		for (int i=0; i<mMixMat.length; i++) {
+			mMixMat[i] = 0;
+		}
+		for (int i=0; i<n; i++) {
+			mMixMat[i*n + i] = ONE;
+		}
+	}
+	
+	@Override
+	protected byte[] mixOperation(byte[] inputChans) {
+		byte[] out = new byte[getNumChans()];
+		mixOperation(inputChans, out);
+		return out;
+	}
+	
+	/**
+	 * Input and output may be the same array, the input
+	 * is then copied before mixing.
+	 */
+	@Override
+	protected void mixOperation(byte[] inputChans, byte[] outputChans) {
+		final int n = getNumChans();
+		final int[] mat = mMixMat;
+		
+		// outputs are written while later rows still read the inputs
+		final byte[] in = (inputChans == outputChans) ? inputChans.clone() : inputChans;
+		
+		int row = 0;
+		for (int i=0; i<n; i++) {
+			int acc = 0;
+			for (int j=0; j<n; j++) {
+				acc += mat[row + j] * in[j];
+			}
+			row += n;
+			
+			// division truncates towards zero, same as casting in MatrixMixer
+			acc /= ONE;
+			if (acc > Byte.MAX_VALUE) {
+				acc = Byte.MAX_VALUE;
+			} else if (acc < Byte.MIN_VALUE) {
+				acc = Byte.MIN_VALUE;
+			}
+			outputChans[i] = (byte) acc;
+		}
+	}
+}
@@ -0,0 +1,288 @@
+package com.tronacademy.phantom.mixer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.ejml.data.DenseMatrix64F;
+import org.ejml.ops.CommonOps;
+
+/**
+ * <p>
+ * Matrix mixers produces an output channel stream by 
+ * matrix multiplication of the mix matrix to the input 
+ * channel stream as a matrix. 
+ * </p>
+ * 
+ * <p>
+ * Working matrices are allocated once on creation, so mixing
+ * does not allocate when an output array is supplied. This 
+ * also means only one thread at a time may mix with a mixer.
+ * </p>
+ * 
+ * <p>
+ * Batches of frames are mixed as one matrix-matrix multiply per
+ * block of frames. Very large batches can be split across an
+ * {@code ExecutorService} with 
+ * {@link #mixBatch(byte[], byte[], ExecutorService, int)}.
+ * </p>
+ * 
+ * <p>
+ * Co-efficients may be changed from another thread while mixing.
+ * Edits are made to a staging matrix, and the mix matrix is swapped
+ * for a copy of it in one atomic step when edits are published. A
+ * mix reads the mix matrix once, so it never blocks and never sees
+ * a partly edited matrix. Use {@code stageMixCoefficient} followed
+ * by {@code publishMix} to apply several edits at once.
+ * </p>
+ * 
+ * @author George Xian
+ * @since 2015-04-20
+ * 
+ */
+public class MatrixMixer extends Mixer {
+	
+	private static final String matIndxErrMsg = "'%s' matrix mixer has no mix co-efficient at [%d, %d]";
+	
+	// matrix read by the mix, never altered once published
+	private final AtomicReference<DenseMatrix64F> mMixMat;
+	// edits not yet published, guarded by itself
+	private final DenseMatrix64F mStagedMat;
+	
+	// working matrices for the mix
+	private final DenseMatrix64F mInput;
+	private final DenseMatrix64F mOutput;
+	private DenseMatrix64F mBatchInput = null;
+	private DenseMatrix64F mBatchOutput = null;
+
+	public MatrixMixer(int channels, String name) {
+		super(channels, name);
+		
+		mStagedMat = CommonOps.identity(channels);
+		mMixMat = new AtomicReference<DenseMatrix64F>(mStagedMat.copy());
+		mInput = new DenseMatrix64F(channels, 1);
+		mOutput = new DenseMatrix64F(channels, 1);
+	}
+	
+	/**
+	 * Gets the mix matrix element value at specified position,
+	 * as currently used by the mix.
+	 * 
+	 * @param row Vertical index of element to request.
+	 * @param col Horizontal index of element to request.
+	 * @return Value of co-efficient at requested position.
+	 * @throws ArrayIndexOutOfBoundsException if requested position is out of bounds.
+	 */
+	public double getMixCoefficientAt(int row, int col) throws ArrayIndexOutOfBoundsException {
+		if (row>=0 && row<getNumChans() && col>=0 && col<getNumChans()) {
+			return mMixMat.get().get(row, col);
+		} else {
+			throw new ArrayIndexOutOfBoundsException(
+					String.format(matIndxErrMsg, getName(), row, col));
+		}
+	}
+	
+	/**
+	 * Set the value of the mix matrix element at specified position
+	 * and publish it, along with any other staged edits, to the mix.
+	 * 
+	 * @param row Vertical index of element to alter.
+	 * @param col Horizontal index of element to alter.
+	 * @param val Value to set mix-coefficient to.
+	 * @throws ArrayIndexOutOfBoundsException if specified position is out of bounds.
+	 */
+	public void setMixCoefficient(int row, int col, double val) throws 
+	ArrayIndexOutOfBoundsException {
+		synchronized (mStagedMat) {
+			stageMixCoefficient(row, col, val);
+			publishMix();
+		}
+	}
+	
+	/**
+	 * Set the value of the mix matrix element at specified position
+	 * without affecting the mix until {@link #publishMix()} is called.
+	 * 
+	 * @param row Vertical index of element to alter.
+	 * @param col Horizontal index of element to alter.
+	 * @param val Value to set mix-coefficient to.
+	 * @throws ArrayIndexOutOfBoundsException if specified position is out of bounds.
+	 */
+	public void stageMixCoefficient(int row, int col, double val) throws 
+	ArrayIndexOutOfBoundsException {
+		if (row>=0 && row<getNumChans() && col>=0 && col<getNumChans()) {
+			synchronized (mStagedMat) {
+				mStagedMat.set(row, col, val);
+			}
+		} else {
+			throw new ArrayIndexOutOfBoundsException(
+					String.format(matIndxErrMsg, getName(), row, col));
+		}
+	}
+	
+	/**
+	 * Atomically replace the mix matrix with the staged edits.
+	 */
+	public void publishMix() {
+		synchronized (mStagedMat) {
+			mMixMat.set(mStagedMat.copy());
+		}
+	}
+	
+	/**
+	 * Makes the mix matrix an identity matrix.
+	 */
+	public void setMixToIdentity() {
+		synchronized (mStagedMat) {
+			CommonOps.setIdentity(mStagedMat);
+			publishMix();
+		}
+	}
+	
+	/**
+	 * @return Mix matrix currently used by the mix, must not be altered.
+	 */
+	DenseMatrix64F getMixMatrix() {
+		return mMixMat.get();
+	}
+	
+	/**
+	 * Replace both the staged and published mix matrix.
+	 * 
+	 * @param mat Matrix to copy co-efficients from.
+	 */
+	void setMixMatrix(DenseMatrix64F mat) {
+		synchronized (mStagedMat) {
+			mStagedMat.set(mat);
+			publishMix();
+		}
+	}
+
+	@Override
+	protected byte[] mixOperation(byte[] inputChans) {
+		byte[] out = new byte[getNumChans()];
+		mixOperation(inputChans, out);
+		return out;
+	}
+	
+	@Override
+	protected void mixOperation(byte[] inputChans, byte[] outputChans) {
+		
+		// put input channels into a matrix
+		final double[] in = mInput.data;
+		for (int i=0; i<getNumChans(); i++) {
+			in[i] = (double) inputChans[i];
+		}
+		
+		// perform the mix
+		CommonOps.mult(mMixMat.get(), mInput, mOutput);
+		
+		// convert to byte array
+		final double[] out = mOutput.data;
+		for (int i=0; i<getNumChans(); i++) {
+			outputChans[i] = (byte) out[i];
+		}
+	}
+	
+	/**
+	 * <p>
+	 * Process many input channel streams placed back to back, splitting 
+	 * the frames into parts which are mixed concurrently. Only worthwhile
+	 * for very large batches.
+	 * </p>
+	 * 
+	 * <p>
+	 * Every part uses the mix matrix published when this is called, so
+	 * a mix published meanwhile never applies to only some of the frames.
+	 * </p>
+	 * 
+	 * @param inputFrames  Input channel streams, a whole number of frames long.
+	 * @param outputFrames Array to write the output channel streams to, same size as input.
+	 * @param executor     Executor to run the parts on.
+	 * @param parts        Number of parts to split the frames into.
+	 * @throws ChannelStreamSizeMismatchException if either array is not a whole number of 
+	 *         frames or they differ in size.
+	 * @throws InterruptedException if interrupted while waiting for the parts to finish.
+	 */
+	public void mixBatch(final byte[] inputFrames, final byte[] outputFrames, 
+			ExecutorService executor, int parts) 
+			throws ChannelStreamSizeMismatchException, InterruptedException {
+		checkBatchSize(inputFrames.length, outputFrames.length);
+		if (getNumChans() == 0) {
+			return;
+		}
+		
+		final DenseMatrix64F mixMat = mMixMat.get();
+		final int frames = inputFrames.length / getNumChans();
+		final int perPart = (frames + Math.max(parts, 1) - 1) / Math.max(parts, 1);
+		final List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+		for (int first=0; first<frames; first+=perPart) {
+			final int offset = first * getNumChans();
+			final int count = Math.min(perPart, frames - first);
+			tasks.add(new Callable<Void>() {
+				@Override
+				public Void call() {
+					// each part needs its own working matrices
+					mixBlocks(mixMat, inputFrames, offset, outputFrames, offset, count, 
+							  new DenseMatrix64F(1, 1), new DenseMatrix64F(1, 1));
+					return null;
+				}
+			});
+		}
+		
+		for (Future<Void> result : executor.invokeAll(tasks)) {
+			try {
+				result.get();
+			} catch (ExecutionException e) {
+				throw new RuntimeException(e.getCause());
+			}
+		}
+	}
+	
+	@Override
+	protected void mixBatchOperation(byte[] inputFrames, int inOffset, 
+			byte[] outputFrames, int outOffset, int frames) {
+		if (mBatchInput == null) {
+			mBatchInput = new DenseMatrix64F(BATCH_BLOCK, getNumChans());
+			mBatchOutput = new DenseMatrix64F(BATCH_BLOCK, getNumChans());
+		}
+		mixBlocks(mMixMat.get(), inputFrames, inOffset, outputFrames, outOffset, frames, 
+				  mBatchInput, mBatchOutput);
+	}
+	
+	/**
+	 * Mix frames a block at a time, as the product of the block of 
+	 * frames (one frame per row) and the transpose of the mix matrix.
+	 */
+	private void mixBlocks(DenseMatrix64F mixMat, byte[] inputFrames, int inOffset, 
+			byte[] outputFrames, int outOffset, int frames, DenseMatrix64F input, DenseMatrix64F output) {
+		final int n = getNumChans();
+		int framesToGo = frames;
+		while (framesToGo > 0) {
+			final int block = Math.min(framesToGo, BATCH_BLOCK);
+			final int len = block * n;
+			input.reshape(block, n, false);
+			output.reshape(block, n, false);
+			
+			final double[] in = input.data;
+			for (int i=0; i<len; i++) {
+				in[i] = (double) inputFrames[inOffset + i];
+			}
+			
+			CommonOps.multTransB(input, mixMat, output);
+			
+			final double[] out = output.data;
+			for (int i=0; i<len; i++) {
+				outputFrames[outOffset + i] = (byte) out[i];
+			}
+			
+			inOffset += len;
+			outOffset += len;
+			framesToGo -= block;
+		}
+	}
+}
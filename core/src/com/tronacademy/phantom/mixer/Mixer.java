@@ -0,0 +1,214 @@
+package com.tronacademy.phantom.mixer;
+
+import java.nio.ByteBuffer;
+
+/**
+ * <p>
+ * This unit defines generic methods that apply to all Mixers.
+ * </p>
+ * 
+ * <p>
+ * Mixers perform mathematical operations on input channel 
+ * streams and returns the resultant output channel stream
+ * of the same size as the input.
+ * </p>
+ * 
+ * <p>
+ * The size of the channel stream the mixer accepts is fixed
+ * upon creation. Performing mix on a channel stream of the 
+ * wrong size will cause an exception. 
+ * </p>
+ * 
+ * <p>
+ * Different mixers have different methods to customize them.
+ * However, they all have a {@code mix} method which accepts 
+ * an input channel stream and performs their mathematical
+ * operation and return the resultant output channel stream.
+ * </p>
+ * 
+ * <p>
+ * Many channel streams (frames) can be mixed in one call with 
+ * {@code mixBatch}, which takes the frames back to back in one
+ * array or buffer.
+ * </p>
+ * 
+ * @author George Xian
+ * @since 2014-12-14
+ *
+ */
+public abstract class Mixer {
+	
+	private static final String negSizeErrMsg = "%s mixer cannot have negative number of channels";
+	protected static final String chanIndexErrMsg = "Channel range of %s mixer is [0, %d), requested channel %d";
+	
+	// frames staged at a time when mixing buffers without a backing array
+	protected static final int BATCH_BLOCK = 256;
+	
+	private String mName;
+	private int mNumChans;
+	
+	public Mixer(int channels, String name) throws NegativeArraySizeException {
+		mName = name;
+		
+		if (channels >= 0) {
+			mNumChans = channels;
+		} else {
+			throw new NegativeArraySizeException(String.format(negSizeErrMsg, mName));
+		}
+		
+	}
+	
+	/**
+	 * @return String name of the Mixer type.
+	 */
+	public String getName() {
+		return mName;
+	}
+	
+	/**
+	 * @return Number of channels this mixer can mix.
+	 */
+	public int getNumChans() {
+		return mNumChans;
+	}
+	
+	/**
+	 * Process input channels and send and output result to a frame packager.
+	 * 
+	 * @param inputChans Input channel stream.
+	 * @return Resultant output channel stream.
+	 * @throws ChannelStreamSizeMismatchException if input channel stream is wrong size.
+	 */
+	public byte[] mix(byte[] inputChans) throws ChannelStreamSizeMismatchException {
+		if (inputChans.length != mNumChans) {
+			throw new ChannelStreamSizeMismatchException(mName, mNumChans, inputChans.length);
+		}
+		return mixOperation(inputChans);
+	}
+	
+	/**
+	 * Process input channels into a caller supplied output array.
+	 * Mixers which support it do this without allocating.
+	 * 
+	 * @param inputChans  Input channel stream.
+	 * @param outputChans Array to write the resultant output channel stream to.
+	 * @throws ChannelStreamSizeMismatchException if either channel stream is wrong size.
+	 */
+	public void mix(byte[] inputChans, byte[] outputChans) throws ChannelStreamSizeMismatchException {
+		if (inputChans.length != mNumChans) {
+			throw new ChannelStreamSizeMismatchException(mName, mNumChans, inputChans.length);
+		}
+		if (outputChans.length != mNumChans) {
+			throw new ChannelStreamSizeMismatchException(mName, mNumChans, outputChans.length);
+		}
+		mixOperation(inputChans, outputChans);
+	}
+	
+	/**
+	 * Process many input channel streams placed back to back. 
+	 * 
+	 * @param inputFrames  Input channel streams, a whole number of frames long.
+	 * @param outputFrames Array to write the output channel streams to, same size as input.
+	 * @throws ChannelStreamSizeMismatchException if either array is not a whole number of 
+	 *         frames or they differ in size.
+	 */
+	public void mixBatch(byte[] inputFrames, byte[] outputFrames) throws ChannelStreamSizeMismatchException {
+		checkBatchSize(inputFrames.length, outputFrames.length);
+		if (mNumChans > 0) {
+			mixBatchOperation(inputFrames, 0, outputFrames, 0, inputFrames.length / mNumChans);
+		}
+	}
+	
+	/**
+	 * Process all remaining input channel streams of a buffer. The positions
+	 * of both buffers are advanced past the frames mixed.
+	 * 
+	 * @param inputFrames  Input channel streams, a whole number of frames long.
+	 * @param outputFrames Buffer to write the output channel streams to.
+	 * @throws ChannelStreamSizeMismatchException if input is not a whole number 
+	 *         of frames or output has less room than input.
+	 */
+	public void mixBatch(ByteBuffer inputFrames, ByteBuffer outputFrames) throws ChannelStreamSizeMismatchException {
+		final int len = inputFrames.remaining();
+		checkBatchSize(len, Math.min(len, outputFrames.remaining()));
+		if (mNumChans == 0) {
+			return;
+		}
+		
+		final int frames = len / mNumChans;
+		if (inputFrames.hasArray() && outputFrames.hasArray()) {
+			mixBatchOperation(inputFrames.array(), inputFrames.arrayOffset() + inputFrames.position(), 
+					          outputFrames.array(), outputFrames.arrayOffset() + outputFrames.position(), 
+					          frames);
+			inputFrames.position(inputFrames.position() + len);
+			outputFrames.position(outputFrames.position() + len);
+		} else {
+			// stage through arrays a block at a time
+			final byte[] in = new byte[BATCH_BLOCK * mNumChans];
+			final byte[] out = new byte[BATCH_BLOCK * mNumChans];
+			int framesToGo = frames;
+			while (framesToGo > 0) {
+				final int block = Math.min(framesToGo, BATCH_BLOCK);
+				inputFrames.get(in, 0, block * mNumChans);
+				mixBatchOperation(in, 0, out, 0, block);
+				outputFrames.put(out, 0, block * mNumChans);
+				framesToGo -= block;
+			}
+		}
+	}
+	
+	/**
+	 * Override to implement custom mathematical operation for mixer. 
+	 * 
+	 * @param inputChans Input channel stream.
+	 * @return Resultant output channel stream.
+	 */
+	protected abstract byte[] mixOperation(byte[] inputChans);
+	
+	/**
+	 * Override to implement the mathematical operation without 
+	 * allocating an output array. By default the result of 
+	 * {@link #mixOperation(byte[])} is copied. 
+	 * 
+	 * @param inputChans  Input channel stream.
+	 * @param outputChans Array to write the resultant output channel stream to.
+	 */
+	protected void mixOperation(byte[] inputChans, byte[] outputChans) {
+		final byte[] out = mixOperation(inputChans);
+		System.arraycopy(out, 0, outputChans, 0, mNumChans);
+	}
+	
+	/**
+	 * Override to mix many frames more efficiently than one at a time.
+	 * By default each frame is mixed with {@link #mixOperation(byte[], byte[])}.
+	 * 
+	 * @param inputFrames  Input channel streams placed back to back.
+	 * @param inOffset     Index of first input channel in {@code inputFrames}.
+	 * @param outputFrames Array to write the output channel streams to.
+	 * @param outOffset    Index of first output channel in {@code outputFrames}.
+	 * @param frames       Number of frames to mix.
+	 */
+	protected void mixBatchOperation(byte[] inputFrames, int inOffset, 
+			byte[] outputFrames, int outOffset, int frames) {
+		final byte[] in = new byte[mNumChans];
+		final byte[] out = new byte[mNumChans];
+		for (int i=0; i<frames; i++) {
+			System.arraycopy(inputFrames, inOffset + i*mNumChans, in, 0, mNumChans);
+			mixOperation(in, out);
+			System.arraycopy(out, 0, outputFrames, outOffset + i*mNumChans, mNumChans);
+		}
+	}
+	
+	/**
+	 * @throws ChannelStreamSizeMismatchException unless both sizes are the
+	 *         same whole number of frames.
+	 */
+	protected void checkBatchSize(int inputLen, int outputLen) throws ChannelStreamSizeMismatchException {
+		if (mNumChans == 0 ? inputLen != 0 : inputLen % mNumChans != 0) {
+			throw new ChannelStreamSizeMismatchException(mName, mNumChans, inputLen);
+		}
+		if (outputLen != inputLen) {
+			throw new ChannelStreamSizeMismatchException(mName, mNumChans, outputLen);
+		}
+	}
+}
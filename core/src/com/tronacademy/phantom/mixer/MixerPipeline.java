@@ -0,0 +1,145 @@
+package com.tronacademy.phantom.mixer;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.ejml.data.DenseMatrix64F;
+import org.ejml.ops.CommonOps;
+
+/**
+ * <p>
+ * Chains several mixers into one, the output channel stream
+ * of each stage is the input of the next.
+ * </p>
+ *
+ * <p>
+ * Consecutive {@code MatrixMixer} stages are fused into a single
+ * matrix mixer holding the product of their mix matrices, so they
+ * cost one mix. Other stages work between two buffers owned by the
+ * pipeline, so no output arrays are allocated between stages.
+ * </p>
+ *
+ * <p>
+ * Fused results are not always the same as running the stages
+ * separately. Each separate stage truncates its outputs towards
+ * zero and wraps them into the range of a byte before the next
+ * stage reads them, the fused mix does neither. While every
+ * intermediate output stays within [-128, 127], each is off by
+ * less than one, scaled by the co-efficients applied to it in
+ * later stages. Once an intermediate output leaves that range the
+ * separate stages see a wrapped value, and outputs can differ by
+ * up to 255. Keep the mixes of fused stages within range, or put
+ * another kind of stage between them.
+ * </p>
+ *
+ * <p>
+ * Fused matrices are computed when the pipeline is built, call
+ * {@link #refresh()} after changing the co-efficients of a stage.
+ * Refreshing swaps in the new fused stages in one step, so it is
+ * safe to refresh while another thread is mixing.
+ * </p>
+ */
+public class MixerPipeline extends Mixer {
+
+	private static final String emptyErrMsg = "'%s' mixer pipeline needs at least one stage";
+	
+	private final Mixer[] mStages;
+	private volatile Mixer[] mRunStages;
+	
+	// intermediate channel streams
+	private final byte[] mBufA;
+	private final byte[] mBufB;
+	
+	/**
+	 * @param name   String name of the pipeline.
+	 * @param stages Mixers to run in order.
+	 * @throws IllegalArgumentException if no stages are given.
+	 * @throws ChannelStreamSizeMismatchException if stages mix different numbers of channels.
+	 */
+	public MixerPipeline(String name, Mixer... stages)
+			throws IllegalArgumentException, ChannelStreamSizeMismatchException {
+		super(channelsOf(name, stages), name);
+		
+		for (Mixer stage : stages) {
+			if (stage.getNumChans() != getNumChans()) {
+				throw new ChannelStreamSizeMismatchException(stage.getName(), stage.getNumChans(), getNumChans());
+			}
+		}
+		
+		mStages = stages.clone();
+		mBufA = new byte[getNumChans()];
+		mBufB = new byte[getNumChans()];
+		refresh();
+	}
+	
+	/**
+	 * @return Number of stages in the pipeline.
+	 */
+	public int getNumStages() {
+		return mStages.length;
+	}
+	
+	/**
+	 * @return Number of stages actually run per mix after fusing.
+	 */
+	public int getNumFusedStages() {
+		return mRunStages.length;
+	}
+	
+	/**
+	 * Recompute the fused stages from the current co-efficients of each stage.
+	 */
+	public void refresh() {
+		final List<Mixer> run = new ArrayList<Mixer>(mStages.length);
+		MatrixMixer fused = null;
+		for (Mixer stage : mStages) {
+			if (stage.getClass() == MatrixMixer.class) {
+				final MatrixMixer matStage = (MatrixMixer) stage;
+				if (fused == null) {
+					fused = new MatrixMixer(getNumChans(), getName());
+					fused.setMixMatrix(matStage.getMixMatrix());
+					run.add(fused);
+				} else {
+					// later stage applies after, so multiplies on the left
+					final DenseMatrix64F product = new DenseMatrix64F(getNumChans(), getNumChans());
+					CommonOps.mult(matStage.getMixMatrix(), fused.getMixMatrix(), product);
+					fused.setMixMatrix(product);
+				}
+			} else {
+				fused = null;
+				run.add(stage);
+			}
+		}
+		mRunStages = run.toArray(new Mixer[run.size()]);
+	}
+	
+	@Override
+	protected byte[] mixOperation(byte[] inputChans) {
+		byte[] out = new byte[getNumChans()];
+		mixOperation(inputChans, out);
+		return out;
+	}
+	
+	@Override
+	protected void mixOperation(byte[] inputChans, byte[] outputChans) {
+		final Mixer[] stages = mRunStages;
+		byte[] src = inputChans;
+		for (int i=0; i<stages.length; i++) {
+			final byte[] dst;
+			if (i == stages.length - 1) {
+				dst = outputChans;
+			} else {
+				dst = (src == mBufA) ? mBufB : mBufA;
+			}
+			stages[i].mixOperation(src, dst);
+			src = dst;
+		}
+	}
+	
+	private static int channelsOf(String name, Mixer[] stages) throws IllegalArgumentException {
+		if (stages.length == 0) {
+			throw new IllegalArgumentException(String.format(emptyErrMsg, name));
+		}
+		return stages[0].getNumChans();
+	}
+}
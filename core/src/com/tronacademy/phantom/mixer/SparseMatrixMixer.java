@@ -0,0 +1,192 @@
+package com.tronacademy.phantom.mixer;
+
+import java.util.Arrays;
+
+/**
+ * <p>
+ * Matrix mixer which stores only the non-zero mix co-efficients,
+ * in compressed sparse row form. Each mix costs time proportional
+ * to the number of non-zero co-efficients instead of the square of
+ * the number of channels, which suits wide mixes where each output
+ * depends on a few inputs.
+ * </p>
+ *
+ * <p>
+ * Outputs are the same as {@code MatrixMixer} with the same
+ * co-efficients. Setting a co-efficient costs time proportional
+ * to the number of non-zero co-efficients, so avoid retuning on
+ * every mix.
+ * </p>
+ */
+public class SparseMatrixMixer extends Mixer {
+
+	private static final String matIndxErrMsg = "'%s' sparse matrix mixer has no mix co-efficient at [%d, %d]";
+	
+	// compressed sparse row form, entries of row i are at [mRowStart[i], mRowStart[i+1])
+	private final int[] mRowStart;
+	private int[] mCols;
+	private double[] mVals;
+	
+	public SparseMatrixMixer(int channels, String name) {
+		super(channels, name);
+		
+		mRowStart = new int[channels + 1];
+		mCols = new int[channels];
+		mVals = new double[channels];
+		setMixToIdentity();
+	}
+	
+	/**
+	 * @return Number of non-zero mix co-efficients.
+	 */
+	public int getNonZeroCount() {
+		return mRowStart[getNumChans()];
+	}
+	
+	/**
+	 * Gets the mix matrix element value at specified position.
+	 *
+	 * @param row Vertical index of element to request.
+	 * @param col Horizontal index of element to request.
+	 * @return Value of co-efficient at requested position.
+	 * @throws ArrayIndexOutOfBoundsException if requested position is out of bounds.
+	 */
+	public double getMixCoefficientAt(int row, int col) throws ArrayIndexOutOfBoundsException {
+		if (row>=0 && row<getNumChans() && col>=0 && col<getNumChans()) {
+			final int index = find(row, col);
+			return (index >= 0) ? mVals[index] : 0.0;
+		} else {
+			throw new ArrayIndexOutOfBoundsException(
+					String.format(matIndxErrMsg, getName(), row, col));
+		}
+	}
+	
+	/**
+	 * Set the value of the mix matrix element at specified position.
+	 * Setting a co-efficient to zero removes it from storage.
+	 *
+	 * @param row Vertical index of element to alter.
+	 * @param col Horizontal index of element to alter.
+	 * @param val Value to set mix-coefficient to.
+	 * @throws ArrayIndexOutOfBoundsException if specified position is out of bounds.
+	 */
+	public void setMixCoefficient(int row, int col, double val) throws
+	ArrayIndexOutOfBoundsException {
+		if (!(row>=0 && row<getNumChans() && col>=0 && col<getNumChans())) {
+			throw new ArrayIndexOutOfBoundsException(
+					String.format(matIndxErrMsg, getName(), row, col));
+		}
+		
+		final int index = find(row, col);
+		if (index >= 0) {
+			if (val != 0.0) {
+				mVals[index] = val;
+			} else {
+				remove(row, index);
+			}
+		} else if (val != 0.0) {
+			insert(row, -(index + 1), col, val);
+		}
+	}
+	
+	/**
+	 * Makes the mix matrix an identity matrix.
+	 */
+	public void setMixToIdentity() {
+		final int n = getNumChans();
+		for (int i=0; i<n; i++) {
+			mRowStart[i] = i;
+			mCols[i] = i;
+			mVals[i] = 1.0;
+		}
+		mRowStart[n] = n;
+	}
+	
+	@Override
+	protected byte[] mixOperation(byte[] inputChans) {
+		byte[] out = new byte[getNumChans()];
+		mixOperation(inputChans, out);
+		return out;
+	}
+	
+	/**
+	 * Input and output may be the same array, the input
+	 * is then copied before mixing.
+	 */
+	@Override
+	protected void mixOperation(byte[] inputChans, byte[] outputChans) {
+		final byte[] in = (inputChans == outputChans) ? inputChans.clone() : inputChans;
+		mixFrame(in, 0, outputChans, 0);
+	}
+	
+	/**
+	 * Input and output may be the same array, each frame
+	 * is then copied before mixing.
+	 */
+	@Override
+	protected void mixBatchOperation(byte[] inputFrames, int inOffset,
+			byte[] outputFrames, int outOffset, int frames) {
+		final int n = getNumChans();
+		if (inputFrames == outputFrames) {
+			final byte[] in = new byte[n];
+			for (int i=0; i<frames; i++) {
+				System.arraycopy(inputFrames, inOffset + i*n, in, 0, n);
+				mixFrame(in, 0, outputFrames, outOffset + i*n);
+			}
+		} else {
+			for (int i=0; i<frames; i++) {
+				mixFrame(inputFrames, inOffset + i*n, outputFrames, outOffset + i*n);
+			}
+		}
+	}
+	
+	/**
+	 * Outputs are written while later rows still read the inputs,
+	 * so {@code in} and {@code out} must not overlap.
+	 */
+	private void mixFrame(byte[] in, int inOffset, byte[] out, int outOffset) {
+		final int[] rowStart = mRowStart;
+		final int[] cols = mCols;
+		final double[] vals = mVals;
+		
+		for (int i=0; i<getNumChans(); i++) {
+			double acc = 0.0;
+			for (int k=rowStart[i]; k<rowStart[i+1]; k++) {
+				acc += vals[k] * in[inOffset + cols[k]];
+			}
+			out[outOffset + i] = (byte) acc;
+		}
+	}
+	
+	/**
+	 * @return Index of entry if stored, otherwise (-(insertion point) - 1).
+	 */
+	private int find(int row, int col) {
+		return Arrays.binarySearch(mCols, mRowStart[row], mRowStart[row+1], col);
+	}
+	
+	private void insert(int row, int index, int col, double val) {
+		final int nnz = getNonZeroCount();
+		if (nnz == mCols.length) {
+			mCols = Arrays.copyOf(mCols, Math.max(2*nnz, 1));
+			mVals = Arrays.copyOf(mVals, Math.max(2*nnz, 1));
+		}
+		
+		System.arraycopy(mCols, index, mCols, index + 1, nnz - index);
+		System.arraycopy(mVals, index, mVals, index + 1, nnz - index);
+		mCols[index] = col;
+		mVals[index] = val;
+		for (int i=row+1; i<mRowStart.length; i++) {
+			mRowStart[i]++;
+		}
+	}
+	
+	private void remove(int row, int index) {
+		final int nnz = getNonZeroCount();
+		System.arraycopy(mCols, index + 1, mCols, index, nnz - index - 1);
+		System.arraycopy(mVals, index + 1, mVals, index, nnz - index - 1);
+		for (int i=row+1; i<mRowStart.length; i++) {
+			mRowStart[i]--;
+		}
+	}
+}
@@ -0,0 +1,45 @@
+package com.tronacadmey.phantom.killalot;
+
+import com.tronacademy.phantom.messaging.ProtocolAssembler.DataType;
+
+/**
+ * <p>
+ * Incoming binary data, begun by a BINARYHEAD frame which gives
+ * the number of data frames and of bytes. Payloads are copied
+ * straight to their place as they arrive, and the padding of
+ * the last frame is dropped.
+ * </p>
+ */
+public class IncomingKillalotBinaryTransaction extends IncomingKillalotIndexedTransaction {
+	
+	final private byte[] mData;
+	
+	/**
+	 * @param packets Number of data frames in the transaction.
+	 * @param length  Number of bytes of data.
+	 */
+	public IncomingKillalotBinaryTransaction(int packets, int length) {
+		super(DataType.BINARY, packets);
+		
+		mData = new byte[length];
+	}
+	
+	@Override
+	protected boolean isOrdered() {
+		return false;
+	}
+	
+	@Override
+	protected void consumePayload(int index, byte[] payload, int offset) {
+		final int start = index * KillalotPacket.PAYLOAD_LEN;
+		final int len = Math.min(KillalotPacket.PAYLOAD_LEN, mData.length - start);
+		if (len > 0) {
+			System.arraycopy(payload, offset, mData, start, len);
+		}
+	}
+	
+	@Override
+	public Object getDecodedResult() {
+		return mData;
+	}
+}
@@ -1,7 +1,5 @@
 package com.tronacadmey.phantom.killalot;
 
-import java.util.Arrays;
-
 import com.tronacademy.phantom.messaging.IncomingTransaction;
 import com.tronacademy.phantom.messaging.Packet;
 import com.tronacademy.phantom.messaging.ProtocolAssembler.DataType;
@@ -25,15 +23,11 @@ public class IncomingKillalotCommandTransaction extends IncomingTransaction {
 	@Override
 	public boolean capturePacket(final Packet packet) {
 		KillalotPacket kPacket = (KillalotPacket) packet;
-		byte[] relevantFragment;
-		if (kPacket.getHeader()[2] < KillalotPacket.PAYLOAD_LEN) {
-			// index cannot be negative
-			relevantFragment = Arrays.copyOfRange(kPacket.getPayload(), 0, (int) kPacket.getHeader()[2] & 0xFF);
-		} else {
-			relevantFragment = kPacket.getPayload();
-		}
+		// bytes remaining cannot be negative
+		final int remaining = kPacket.getHeaderByte(2) & 0xFF;
+		final int fragmentLen = Math.min(remaining, KillalotPacket.PAYLOAD_LEN);
 		
-		mCmdStr.append(new String(relevantFragment));
+		mCmdStr.append(new String(kPacket.getFrameBuffer(), kPacket.getPayloadOffset(), fragmentLen));
 		
 		return super.capturePacket(packet);
 	}
@@ -0,0 +1,93 @@
+package com.tronacadmey.phantom.killalot;
+
+import java.nio.ByteBuffer;
+
+import com.tronacademy.phantom.messaging.ImageBufferPool;
+import com.tronacademy.phantom.messaging.PBitmap;
+import com.tronacademy.phantom.messaging.PBitmap.Encoding;
+import com.tronacademy.phantom.messaging.ProtocolAssembler.DataType;
+
+public class IncomingKillalotImageTransaction extends IncomingKillalotIndexedTransaction {
+	
+	// image being received, filled in place
+	final private PBitmap mBitmap;
+	final private byte[] mStream;
+	final private int mStreamStart;
+	
+	// decodes compressed pixel streams, null if uncompressed
+	final private KillalotImageInflater mInflater;
+
+	/**
+	 * @param packets  Number of packets in the transaction.
+	 * @param rows     Number of rows in the bitmap.
+	 * @param cols     Number of columns in the bitmap.	
+	 * @param encoding How each pixel in encoded.
+	 */
+	public IncomingKillalotImageTransaction(int packets, int width, int height, Encoding encoding) {
+		this(packets, width, height, encoding, KillalotAssembler.K_IMG_ENC_RAW, null);
+	}
+	
+	/**
+	 * @param packets     Number of packets in the transaction.
+	 * @param width       Width of image in pixels.
+	 * @param height      Height of image in pixels.
+	 * @param encoding    How each pixel in encoded.
+	 * @param compression Compression of the pixel stream, from the high nibble of the encoding byte.
+	 * @param pool        Pool to take the image's store from, null to allocate it.
+	 * @throws IllegalArgumentException if the compression is not known.
+	 */
+	public IncomingKillalotImageTransaction(int packets, int width, int height, Encoding encoding, 
+			byte compression, ImageBufferPool pool) throws IllegalArgumentException {
+		super(DataType.IMAGE, packets);
+		
+		// heap backed, so the pixel stream is decoded straight into its array
+		mBitmap = (pool != null) ? PBitmap.fromPool(pool, encoding, width, height) : 
+			                       new PBitmap(encoding, width, height);
+		final ByteBuffer store = mBitmap.asByteBuffer();
+		mStream = store.array();
+		mStreamStart = store.arrayOffset();
+		
+		if (compression != KillalotAssembler.K_IMG_ENC_RAW) {
+			mInflater = new KillalotImageInflater(compression, mStream, mStreamStart, 
+					mBitmap.getSizeInBytes(), width * PBitmap.getBytesPerPixel(encoding));
+		} else {
+			mInflater = null;
+		}
+	}
+	
+	@Override
+	protected boolean isOrdered() {
+		// compressed streams decode in order, raw payloads go straight to their place
+		return mInflater != null;
+	}
+	
+	@Override
+	protected void consumePayload(int index, byte[] payload, int offset) {
+		if (mInflater != null) {
+			mInflater.inflate(payload, offset, KillalotPacket.PAYLOAD_LEN);
+		} else {
+			final int start = index * KillalotPacket.PAYLOAD_LEN;
+			final int len = Math.min(KillalotPacket.PAYLOAD_LEN, mBitmap.getSizeInBytes() - start);
+			if (len > 0) {
+				System.arraycopy(payload, offset, mStream, mStreamStart + start, len);
+			}
+		}
+	}
+	
+	@Override
+	public Object getDecodedResult() {
+		if (mInflater != null && !mInflater.isFinished()) {
+			mBitmap.recycle();
+			return null;
+		}
+		return mBitmap;
+	}
+	
+	/**
+	 * Give up on the image before it completes, handing
+	 * back its store if pooled.
+	 */
+	public void abandon() {
+		mBitmap.recycle();
+	}
+}
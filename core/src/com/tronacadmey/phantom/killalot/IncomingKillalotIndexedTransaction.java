@@ -0,0 +1,143 @@
+package com.tronacadmey.phantom.killalot;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+import com.tronacademy.phantom.messaging.IncomingTransaction;
+import com.tronacademy.phantom.messaging.Packet;
+import com.tronacademy.phantom.messaging.ProtocolAssembler.DataType;
+
+/**
+ * <p>
+ * Incoming transaction whose frames carry their index in the
+ * last 3 header bytes. Frames are placed by index rather than
+ * by order of arrival, so lost and reordered frames corrupt
+ * nothing. Received frames are tracked in a bitset, duplicates
+ * are ignored, and the transaction completes once every frame
+ * has arrived. Missing frames can be asked for again with
+ * {@code KillalotAssembler.serializeResendRequest}.
+ * </p>
+ *
+ * <p>
+ * Subclasses which can only consume payloads in order have
+ * early frames held back until the gap before them is filled.
+ * </p>
+ */
+public abstract class IncomingKillalotIndexedTransaction extends IncomingTransaction {
+
+	private final int mFrames;
+	private final BitSet mReceived;
+	
+	// frames before this index have all been consumed, when consuming in order
+	private int mNextInOrder = 0;
+	private byte[] mHeld = null;
+	
+	// identifies the transfer in acknowledgements, from the head frame
+	private int mTransferId = 0;
+	
+	/**
+	 * @param type    Type of data being decoded.
+	 * @param packets Number of indexed frames in the transaction.
+	 */
+	public IncomingKillalotIndexedTransaction(DataType type, int packets) {
+		super(type, packets);
+		
+		mFrames = packets;
+		mReceived = new BitSet(packets);
+	}
+	
+	@Override
+	public boolean capturePacket(final Packet packet) {
+		final KillalotPacket kPacket = (KillalotPacket) packet;
+		final int index = kPacket.getIndex();
+		if (index >= mFrames || mReceived.get(index)) {
+			// not part of this transaction or already received
+			return getPacketsToGo() <= 0;
+		}
+		mReceived.set(index);
+		
+		final byte[] payload = kPacket.getFrameBuffer();
+		final int offset = kPacket.getPayloadOffset();
+		if (!isOrdered()) {
+			consumePayload(index, payload, offset);
+		} else if (index == mNextInOrder) {
+			consumePayload(index, payload, offset);
+			mNextInOrder++;
+			
+			// frames held back behind the gap which was just filled
+			while (mNextInOrder < mFrames && mReceived.get(mNextInOrder)) {
+				consumePayload(mNextInOrder, mHeld, mNextInOrder * KillalotPacket.PAYLOAD_LEN);
+				mNextInOrder++;
+			}
+		} else {
+			if (mHeld == null) {
+				mHeld = new byte[mFrames * KillalotPacket.PAYLOAD_LEN];
+			}
+			System.arraycopy(payload, offset, mHeld, index * KillalotPacket.PAYLOAD_LEN,
+					KillalotPacket.PAYLOAD_LEN);
+		}
+		
+		return super.capturePacket(packet);
+	}
+	
+	/**
+	 * @return Number of indexed frames in the transaction.
+	 */
+	public int getNumFrames() {
+		return mFrames;
+	}
+	
+	/**
+	 * @return Ranges of frames not received yet as {first index, count}, in order.
+	 */
+	public List<int[]> getMissingRanges() {
+		final List<int[]> ranges = new ArrayList<int[]>();
+		int first = mReceived.nextClearBit(0);
+		while (first < mFrames) {
+			final int next = mReceived.nextSetBit(first);
+			final int end = (next < 0) ? mFrames : next;
+			ranges.add(new int[] {first, end - first});
+			first = mReceived.nextClearBit(end);
+		}
+		return ranges;
+	}
+	
+	/**
+	 * @return Indices of the frames received so far.
+	 */
+	public BitSet getReceived() {
+		return (BitSet) mReceived.clone();
+	}
+	
+	/**
+	 * @param transferId Transfer identifier given by the head frame, echoed in acknowledgements.
+	 */
+	public void setTransferId(int transferId) {
+		mTransferId = transferId;
+	}
+	
+	/**
+	 * @return Transfer identifier given by the head frame.
+	 */
+	public int getTransferId() {
+		return mTransferId;
+	}
+	
+	/**
+	 * @return Flag indicating whether payloads must be consumed in index order.
+	 */
+	protected boolean isOrdered() {
+		return true;
+	}
+	
+	/**
+	 * Consume the payload of one frame. Called once for each
+	 * frame, in index order unless {@link #isOrdered()} is false.
+	 *
+	 * @param index   Index of the frame.
+	 * @param payload Buffer holding the payload.
+	 * @param offset  Index of the first payload byte in {@code payload}.
+	 */
+	protected abstract void consumePayload(int index, byte[] payload, int offset);
+}
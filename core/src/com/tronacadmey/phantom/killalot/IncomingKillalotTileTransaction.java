@@ -0,0 +1,118 @@
+package com.tronacadmey.phantom.killalot;
+
+import java.nio.ByteBuffer;
+
+import com.tronacademy.phantom.messaging.PBitmap;
+import com.tronacademy.phantom.messaging.ProtocolAssembler.DataType;
+
+/**
+ * <p>
+ * Receives the changed tiles of an image sent by a
+ * {@code KillalotVideoSender}, and patches them in place 
+ * as each frame arrives into the previous image, a copy 
+ * which the decoder owns and never hands to listeners. 
+ * The result is that image.
+ * </p>
+ * 
+ * <p>
+ * Once the transaction completes, the decoder delivers a
+ * snapshot of the patched image which the listener owns.
+ * Snapshots are taken from the decoder's image pool, or 
+ * from one the decoder keeps if none is set, so listeners 
+ * which recycle them cost no allocation per image.
+ * </p>
+ */
+public class IncomingKillalotTileTransaction extends IncomingKillalotIndexedTransaction {
+
+	private static final int TILE = KillalotAssembler.IMAGE_TILE_SIZE;
+	
+	private final PBitmap mFrame;
+	private final ByteBuffer mPixels;
+	private final int mPixelBytes;
+	private final int mRowBytes;
+	private final int mTilesX;
+	private final int mTiles;
+	
+	// bitmap of changed tiles, filled from the first frames
+	private final byte[] mDirty;
+	private int mDirtyIndex = 0;
+	
+	// position in the tile being patched
+	private int mTile = -1;
+	private int mTileRows;
+	private int mTileLen;
+	private int mTileStart;
+	private int mRow;
+	private int mCol;
+	
+	/**
+	 * @param packets Number of packets in the transaction.
+	 * @param frame   Previous image to patch, of the same size and encoding as the tiles.
+	 */
+	public IncomingKillalotTileTransaction(int packets, PBitmap frame) {
+		super(DataType.IMAGE, packets);
+		
+		mFrame = frame;
+		mPixels = frame.asByteBuffer();
+		mPixelBytes = PBitmap.getBytesPerPixel(frame.getEncoding());
+		mRowBytes = frame.getWidth() * mPixelBytes;
+		mTilesX = (frame.getWidth() + TILE - 1) / TILE;
+		mTiles = mTilesX * ((frame.getHeight() + TILE - 1) / TILE);
+		mDirty = new byte[(mTiles + Byte.SIZE - 1) / Byte.SIZE];
+	}
+	
+	@Override
+	protected void consumePayload(int index, byte[] payload, int offset) {
+		for (int i=offset; i<offset+KillalotPacket.PAYLOAD_LEN; i++) {
+			if (mDirtyIndex < mDirty.length) {
+				mDirty[mDirtyIndex++] = payload[i];
+			} else if (mTile < mTiles) {
+				if (mTile < 0 || !advance()) {
+					nextTile();
+					if (mTile >= mTiles) {
+						// rest is padding
+						break;
+					}
+				}
+				mPixels.put(mTileStart + mRow*mRowBytes + mCol, payload[i]);
+			}
+		}
+	}
+	
+	@Override
+	public Object getDecodedResult() {
+		return mFrame;
+	}
+	
+	/**
+	 * Move to the next byte of the current tile.
+	 *
+	 * @return Flag indicating whether the tile has bytes left.
+	 */
+	private boolean advance() {
+		if (++mCol < mTileLen) {
+			return true;
+		}
+		mCol = 0;
+		return ++mRow < mTileRows;
+	}
+	
+	/**
+	 * Move to the first byte of the next changed tile.
+	 */
+	private void nextTile() {
+		do {
+			mTile++;
+		} while (mTile < mTiles && (mDirty[mTile / Byte.SIZE] & (0x80 >>> (mTile % Byte.SIZE))) == 0);
+		
+		if (mTile < mTiles) {
+			final int tx = mTile % mTilesX;
+			final int ty = mTile / mTilesX;
+			mTileStart = ty*TILE*mRowBytes + tx*TILE*mPixelBytes;
+			mTileLen = Math.min(TILE, mFrame.getWidth() - tx*TILE) * mPixelBytes;
+			mTileRows = Math.min(TILE, mFrame.getHeight() - ty*TILE);
+			mRow = 0;
+			mCol = 0;
+		}
+	}
+}
@@ -0,0 +1,385 @@
+package com.tronacadmey.phantom.killalot;
+
+import java.nio.ByteBuffer;
+
+/**
+ * <p>
+ * Selective repeat sender for one image or binary transfer over
+ * a lossy link. At most {@code window} frames are in flight, and
+ * frames are sent again only when they are found to be lost,
+ * so a loss costs one frame rather than the whole transfer.
+ * </p>
+ *
+ * <p>
+ * The receiver acknowledges with {@code KillalotAssembler.serializeAck},
+ * which the decoder at this end hands to {@link #onAck(byte, int, int, int, int)}
+ * when this is set as its {@code OnAckListener}. RESEND requests may
+ * be handed to {@link #onResendRequest(int)} as negative acknowledgements.
+ * </p>
+ *
+ * <p>
+ * A frame is lost when it is not acknowledged within the retransmit
+ * timeout, or when frames sent after it were acknowledged and it has
+ * been out longer than the round trip time. The timeout is estimated
+ * from the round trip times of frames sent once, and doubled when a
+ * frame times out. Frames are produced again from the transaction
+ * when they are resent, so only the send time and count of the
+ * unacknowledged frames in the window are kept.
+ * </p>
+ *
+ * <p>
+ * Transfers are tagged with a transfer identifier in their meta data
+ * frame so acknowledgements of earlier transfers are ignored. It should
+ * differ from that of the previous transfer of the same type, and not be
+ * zero, which receivers take to mean untagged.
+ * </p>
+ *
+ * <p>
+ * The decoder thread hands acknowledgements and RESEND requests to
+ * this while the sending thread calls {@link #encodeTo(ByteBuffer)},
+ * so the public methods are synchronized on this sender. Each holds
+ * the lock only for one pass over the window.
+ * </p>
+ */
+public class KillalotArqSender implements KillalotDecoder.OnAckListener {
+
+	public static final int DEFAULT_WINDOW = 256;
+	public static final int DEFAULT_MAX_RETRANSMITS = 16;
+	public static final long DEFAULT_INITIAL_TIMEOUT = 500000000L;
+	public static final long DEFAULT_MIN_TIMEOUT = 10000000L;
+	public static final long DEFAULT_MAX_TIMEOUT = 4000000000L;
+	
+	private static final String windowErrMsg = "Window of %d frames is not positive";
+	
+	// frames of an image or binary transaction before the first data frame
+	private static final int DATA_OFFSET = 1;
+	
+	private final OutgoingKillalotTransaction mTransaction;
+	private final byte mDataType;
+	private final int mTransferId;
+	private final int mFrames;
+	private final int mWindow;
+	
+	// window of frames from mBase to mNext, kept in rings indexed by frame % mWindow
+	private final long[] mSentAt;
+	private final int[] mSends;
+	private final boolean[] mAcked;
+	private final boolean[] mNacked;
+	private int mBase = 0;
+	private int mNext = 0;
+	private int mHighestAcked = -1;
+	
+	// retransmit timer, in nanoseconds
+	private boolean mMeasured = false;
+	private long mSrtt = 0;
+	private long mRttVar = 0;
+	private long mTimeout = DEFAULT_INITIAL_TIMEOUT;
+	private long mMinTimeout = DEFAULT_MIN_TIMEOUT;
+	private long mMaxTimeout = DEFAULT_MAX_TIMEOUT;
+	private int mMaxRetransmits = DEFAULT_MAX_RETRANSMITS;
+	private boolean mFailed = false;
+	
+	// frame being encoded
+	private final byte[] mScratch = new byte[KillalotPacket.getDecodedSize()];
+	
+	// statistics
+	private long mFramesSent = 0;
+	private long mFramesResent = 0;
+	
+	/**
+	 * @param image      Image to send, which has not sent any frames.
+	 * @param window     Most frames in flight at a time.
+	 * @param transferId Transfer identifier from 1 to 255.
+	 * @throws IllegalArgumentException if the window is not positive.
+	 */
+	public KillalotArqSender(OutgoingKillalotImageTransaction image, int window, int transferId)
+			throws IllegalArgumentException {
+		this(image, KillalotAssembler.IMAGE_INDICATOR, window, transferId);
+		image.setTransferId(transferId);
+	}
+	
+	/**
+	 * @param binary     Binary data to send, which has not sent any frames.
+	 * @param window     Most frames in flight at a time.
+	 * @param transferId Transfer identifier from 1 to 255.
+	 * @throws IllegalArgumentException if the window is not positive.
+	 */
+	public KillalotArqSender(OutgoingKillalotBinaryTransaction binary, int window, int transferId)
+			throws IllegalArgumentException {
+		this(binary, KillalotAssembler.BINARY_INDICATOR, window, transferId);
+		binary.setTransferId(transferId);
+	}
+	
+	private KillalotArqSender(OutgoingKillalotTransaction transaction, byte dataType, int window, int transferId)
+			throws IllegalArgumentException {
+		if (window <= 0) {
+			throw new IllegalArgumentException(String.format(windowErrMsg, window));
+		}
+		
+		mTransaction = transaction;
+		mDataType = dataType;
+		mTransferId = transferId & 0xFF;
+		mFrames = transaction.getNumPackets();
+		mWindow = window;
+		
+		mSentAt = new long[window];
+		mSends = new int[window];
+		mAcked = new boolean[window];
+		mNacked = new boolean[window];
+	}
+	
+	/**
+	 * @param min Shortest retransmit timeout in nanoseconds.
+	 * @param max Longest retransmit timeout in nanoseconds.
+	 */
+	public synchronized void setTimeoutBounds(long min, long max) {
+		mMinTimeout = min;
+		mMaxTimeout = Math.max(min, max);
+		mTimeout = Math.min(Math.max(mTimeout, mMinTimeout), mMaxTimeout);
+	}
+	
+	/**
+	 * @param retransmits Times a frame may be sent again after its first send,
+	 *                    the transfer fails when it is due to be sent once more.
+	 */
+	public synchronized void setMaxRetransmits(int retransmits) {
+		mMaxRetransmits = retransmits;
+	}
+	
+	/**
+	 * Write the frames due to be sent, which are lost frames
+	 * oldest first followed by new frames the window allows.
+	 *
+	 * @param dst Buffer to write SLIP encoded frames to.
+	 * @return Number of frames written.
+	 */
+	public int encodeTo(ByteBuffer dst) {
+		return encodeTo(dst, now());
+	}
+	
+	/**
+	 * @param dst Buffer to write SLIP encoded frames to.
+	 * @param now Current time in nanoseconds, on the clock of {@link #now()}.
+	 * @return Number of frames written.
+	 * @see #encodeTo(ByteBuffer)
+	 */
+	public synchronized int encodeTo(ByteBuffer dst, long now) {
+		if (mFailed) {
+			return 0;
+		}
+		
+		int written = 0;
+		boolean timedOut = false;
+		
+		// frames sent after this one got through and it is overdue by more 
+		// than the frames may be reordered by, so it was most likely lost
+		final long overtaken = mMeasured ? mSrtt + Math.max(mSrtt / 4, mRttVar) : mTimeout;
+		
+		for (int frame=mBase; frame<mNext; frame++) {
+			final int slot = frame % mWindow;
+			if (mAcked[slot]) {
+				continue;
+			}
+			
+			final long age = now - mSentAt[slot];
+			final boolean expired = age >= mTimeout;
+			if (!expired && !mNacked[slot] && !(frame < mHighestAcked && age >= overtaken)) {
+				continue;
+			}
+			// sends after the first are retransmits
+			if (mSends[slot] - 1 >= mMaxRetransmits) {
+				mFailed = true;
+				return written;
+			}
+			if (!send(frame, dst)) {
+				break;
+			}
+			
+			timedOut |= expired;
+			mSends[slot]++;
+			mSentAt[slot] = now;
+			mNacked[slot] = false;
+			mFramesResent++;
+			written++;
+		}
+		
+		if (timedOut) {
+			// back off until a round trip is measured again
+			mTimeout = Math.min(mTimeout * 2, mMaxTimeout);
+		}
+		
+		while (mNext < mFrames && mNext < mBase + mWindow && dst.hasRemaining()) {
+			if (!send(mNext, dst)) {
+				break;
+			}
+			
+			final int slot = mNext % mWindow;
+			mSentAt[slot] = now;
+			mSends[slot] = 1;
+			mAcked[slot] = false;
+			mNacked[slot] = false;
+			mNext++;
+			written++;
+		}
+		return written;
+	}
+	
+	@Override
+	public void onAck(byte dataType, int transferId, int cumulative, int block, int bits) {
+		onAck(dataType, transferId, cumulative, block, bits, now());
+	}
+	
+	/**
+	 * @param dataType   Frame type of the data acknowledged.
+	 * @param transferId Transfer identifier echoed from the head frame.
+	 * @param cumulative Index before which every data frame was received.
+	 * @param block      Number of the block of 32 frames after {@code cumulative}.
+	 * @param bits       Frames received in the block, least significant bit first.
+	 * @param now        Current time in nanoseconds, on the clock of {@link #now()}.
+	 * @see #onAck(byte, int, int, int, int)
+	 */
+	public synchronized void onAck(byte dataType, int transferId, int cumulative, int block, int bits, long now) {
+		if (dataType != mDataType || transferId != mTransferId) {
+			// acknowledges some other transfer
+			return;
+		}
+		
+		// any acknowledgement means the meta data frame arrived
+		// the longest round trip includes the time the receiver held the acknowledgement
+		long rtt = -1;
+		final int received = Math.min(cumulative + DATA_OFFSET, mNext);
+		for (int frame=mBase; frame<received; frame++) {
+			rtt = Math.max(rtt, ack(frame, now));
+		}
+		
+		final int start = cumulative + DATA_OFFSET + 1 + block*KillalotAssembler.ACK_BLOCK_BITS;
+		for (int i=0; i<KillalotAssembler.ACK_BLOCK_BITS; i++) {
+			final int frame = start + i;
+			if ((bits & (1 << i)) != 0 && frame >= mBase && frame < mNext) {
+				rtt = Math.max(rtt, ack(frame, now));
+			}
+		}
+		
+		if (rtt >= 0) {
+			updateTimeout(rtt);
+		}
+		
+		// slide the window past the frames acknowledged
+		while (mBase < mNext && mAcked[mBase % mWindow]) {
+			mBase++;
+		}
+	}
+	
+	/**
+	 * Send data frames again on the next {@link #encodeTo(ByteBuffer)}
+	 * without waiting for them to time out.
+	 *
+	 * @param code Code of a RESEND request.
+	 */
+	public synchronized void onResendRequest(int code) {
+		final int first = KillalotAssembler.getResendIndex(code) + DATA_OFFSET;
+		final int end = Math.min(first + KillalotAssembler.getResendCount(code), mNext);
+		for (int frame=Math.max(first, mBase); frame<end; frame++) {
+			final int slot = frame % mWindow;
+			if (!mAcked[slot]) {
+				mNacked[slot] = true;
+			}
+		}
+	}
+	
+	/**
+	 * @return Flag indicating whether every frame has been acknowledged.
+	 */
+	public synchronized boolean isComplete() {
+		return mBase >= mFrames;
+	}
+	
+	/**
+	 * @return Flag indicating whether a frame was sent too many times without being acknowledged.
+	 */
+	public synchronized boolean hasFailed() {
+		return mFailed;
+	}
+	
+	/**
+	 * @return Number of frames sent and not acknowledged yet.
+	 */
+	public synchronized int getFramesInFlight() {
+		int inFlight = 0;
+		for (int frame=mBase; frame<mNext; frame++) {
+			if (!mAcked[frame % mWindow]) {
+				inFlight++;
+			}
+		}
+		return inFlight;
+	}
+	
+	/**
+	 * @return Current retransmit timeout in nanoseconds.
+	 */
+	public synchronized long getRetransmitTimeout() {
+		return mTimeout;
+	}
+	
+	/**
+	 * @return Number of frames sent, including frames sent again.
+	 */
+	public synchronized long getFramesSent() {
+		return mFramesSent;
+	}
+	
+	/**
+	 * @return Number of frames sent again.
+	 */
+	public synchronized long getFramesResent() {
+		return mFramesResent;
+	}
+	
+	/**
+	 * Clock for send times and timeouts. Defaults to
+	 * {@code System.nanoTime()}, may be overridden to
+	 * run the sender on another clock.
+	 *
+	 * @return Current time in nanoseconds.
+	 */
+	protected long now() {
+		return System.nanoTime();
+	}
+	
+	private boolean send(int frame, ByteBuffer dst) {
+		mTransaction.fillFrame(frame, mScratch, 0);
+		if (!KillalotPacket.encode(mScratch, 0, dst, mTransaction.hasFrameCrc())) {
+			return false;
+		}
+		mFramesSent++;
+		return true;
+	}
+	
+	/**
+	 * @return Round trip time of the frame, -1 if
+	 *         already acknowledged or sent more than once.
+	 */
+	private long ack(int frame, long now) {
+		final int slot = frame % mWindow;
+		if (mAcked[slot]) {
+			return -1;
+		}
+		mAcked[slot] = true;
+		mHighestAcked = Math.max(mHighestAcked, frame);
+		
+		// a frame sent more than once gives no telling which send was acknowledged
+		return (mSends[slot] == 1) ? now - mSentAt[slot] : -1;
+	}
+	
+	private void updateTimeout(long rtt) {
+		if (!mMeasured) {
+			mMeasured = true;
+			mSrtt = rtt;
+			mRttVar = rtt / 2;
+		} else {
+			mRttVar = (3*mRttVar + Math.abs(mSrtt - rtt)) / 4;
+			mSrtt = (7*mSrtt + rtt) / 8;
+		}
+		mTimeout = Math.min(Math.max(mSrtt + 4*mRttVar, mMinTimeout), mMaxTimeout);
+	}
+}
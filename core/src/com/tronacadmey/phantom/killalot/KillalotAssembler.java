@@ -0,0 +1,405 @@
+package com.tronacadmey.phantom.killalot;
+
+import java.io.ByteArrayOutputStream;
+import java.util.BitSet;
+import java.util.List;
+
+import com.tronacademy.phantom.messaging.OutgoingTransaction;
+import com.tronacademy.phantom.messaging.PBitmap;
+import com.tronacademy.phantom.messaging.ProtocolAssembler;
+
+/**
+ *
+ * @author George Xian
+ * @since 2015-04-30
+ *
+ */
+public class KillalotAssembler implements ProtocolAssembler {
+
+	// protocol control
+	public static final byte HEARTBEAT_INDICATOR = 1;
+	public static final byte CTLERR_INDICATOR = 2;
+	public static final byte CTLREQ_INDICATOR = 3;
+	
+	// CTLREQ request codes, header 2nd byte
+	public static final byte K_REQ_STOP = 0x01;
+	public static final byte K_REQ_RESEND = 0x02;
+	public static final int RESEND_COUNT_LIMIT = 255;
+	public static final byte K_REQ_ACK = 0x03;
+	public static final int ACK_BLOCK_BITS = 32;
+	public static final int ACK_BLOCK_LIMIT = 256;
+	
+	// channel control and system commands 
+	public static final byte CHANNEL_INDICATOR = 10;
+	public static final byte COMMAND_INDICATOR = 11;
+	
+	// images
+	public static final byte IMAGEHEAD_INDICATOR = 12;
+	public static final byte IMAGE_INDICATOR = 13;
+	
+	public static final byte K_IMG_ENC_RGB565 = 0x02;
+	public static final byte K_IMG_ENC_ARGB8888 = 0x04;
+	
+	// compression of the pixel stream, or'd into the high nibble of the encoding byte
+	public static final byte K_IMG_ENC_PIXEL_MASK = 0x0F;
+	public static final byte K_IMG_ENC_RAW = 0x00;
+	public static final byte K_IMG_ENC_RLE = 0x10;
+	public static final byte K_IMG_ENC_LZ = 0x20;
+	
+	// changed tiles patched onto the previous image, see KillalotVideoSender
+	public static final byte K_IMG_ENC_TILES = 0x40;
+	public static final int IMAGE_TILE_SIZE = 8;
+	
+	// binary data
+	public static final byte BINARYHEAD_INDICATOR = 20;
+	public static final byte BINARY_INDICATOR = 21;
+	
+	// limits for each type of data type
+	public static final int CHANNEL_PACK_LIMIT = 255;
+	public static final int COMMAND_CHAR_LIMIT = 255;
+	public static final int IMAGE_PACK_LIMIT = 16777216;
+	public static final int BINARY_PACK_LIMIT = 16777216;
+	
+	private static final String compressionErrMsg = "Unknown image compression 0x%02X";
+	
+	private byte mImageCompression = K_IMG_ENC_RAW;
+	private boolean mFrameCrc = false;
+	
+	@Override
+	public String getName() {
+		return "Killalot";
+	}
+	
+	/**
+	 * Set whether frames of the transactions assembled from now on 
+	 * carry a CRC, for links whose decoder checks it.
+	 * 
+	 * <p>
+	 * The CRC is worth its cost only on links which corrupt frames.
+	 * Each frame grows by 2 bytes, and taking the CRC costs about as
+	 * much as escaping a frame which needs no escapes, so {@code PacketBench}
+	 * encodes such frames at about half the rate with it. Frames whose
+	 * payloads need escaping encode about 10% slower.
+	 * </p>
+	 * 
+	 * @param crc Flag indicating whether frames are written with a CRC.
+	 */
+	public void setFrameCrc(boolean crc) {
+		mFrameCrc = crc;
+	}
+	
+	/**
+	 * @return Flag indicating whether frames are written with a CRC.
+	 */
+	public boolean hasFrameCrc() {
+		return mFrameCrc;
+	}
+	
+	@Override
+	public OutgoingTransaction serializeAsChannels(String name, byte[] channelStream) {
+		final int noOfPackets = (int) Math.ceil((double) channelStream.length / 
+								(double) KillalotPacket.PAYLOAD_LEN);
+		
+		if (noOfPackets > CHANNEL_PACK_LIMIT) {
+			return null;
+		}
+		
+		final byte[] frames = new byte[noOfPackets * KillalotPacket.getDecodedSize()];
+		for (int i=0; i<noOfPackets; i++) {
+			final int frame = i * KillalotPacket.getDecodedSize();
+			
+			// for channel frames, header 4th byte is first channel index in packet
+			frames[frame] = CHANNEL_INDICATOR;
+			frames[frame + 3] = (byte) (i*KillalotPacket.PAYLOAD_LEN);
+			
+			copyPayload(channelStream, i*KillalotPacket.PAYLOAD_LEN, frames, frame);
+		}
+		
+		return framed(new OutgoingKillalotTransaction(name, frames, noOfPackets, 0));
+	}
+
+	@Override
+	public OutgoingTransaction serializeAsCommands(String name, String command) {
+		final int noOfPackets = (int) Math.ceil((double) command.length() / 
+				                                (double) KillalotPacket.PAYLOAD_LEN);
+		
+		int bytesToSend = command.length();
+		if (bytesToSend > COMMAND_CHAR_LIMIT) {
+			return null;
+		}
+		
+		final byte[] cmdBytes = command.getBytes();
+		final byte[] frames = new byte[noOfPackets * KillalotPacket.getDecodedSize()];
+		for (int i=0; i<noOfPackets; i++) {
+			final int frame = i * KillalotPacket.getDecodedSize();
+			
+			// for command frames, 3rd byte is bytes remaining, 4th byte is total number of bytes 
+			frames[frame] = COMMAND_INDICATOR;
+			frames[frame + 2] = (byte) ((bytesToSend > 0) ? bytesToSend : 0);
+			frames[frame + 3] = (byte) command.length();
+			
+			copyPayload(cmdBytes, i*KillalotPacket.PAYLOAD_LEN, frames, frame);
+			
+			if (bytesToSend >= KillalotPacket.PAYLOAD_LEN) {
+				bytesToSend -= KillalotPacket.PAYLOAD_LEN;
+			} else {
+				bytesToSend = 0;
+			}
+		}
+		
+		return framed(new OutgoingKillalotTransaction(name, frames, noOfPackets, 1));
+	}
+
+	/**
+	 * Set how {@link #serializeAsBitmap(String, PBitmap)} compresses images.
+	 * 
+	 * @param compression One of {@code K_IMG_ENC_RAW}, {@code K_IMG_ENC_RLE} or {@code K_IMG_ENC_LZ}.
+	 * @throws IllegalArgumentException if the compression is not known.
+	 */
+	public void setImageCompression(byte compression) throws IllegalArgumentException {
+		if (compression != K_IMG_ENC_RAW && compression != K_IMG_ENC_RLE && compression != K_IMG_ENC_LZ) {
+			throw new IllegalArgumentException(String.format(compressionErrMsg, compression & 0xFF));
+		}
+		mImageCompression = compression;
+	}
+	
+	/**
+	 * @return Compression applied to images.
+	 */
+	public byte getImageCompression() {
+		return mImageCompression;
+	}
+	
+	@Override
+	public OutgoingTransaction serializeAsBitmap(String name, PBitmap bmp) {
+		return serializeAsBitmap(name, bmp, mImageCompression);
+	}
+	
+	/**
+	 * <p>
+	 * Serialize a bitmap with its pixel stream compressed. For
+	 * compressed images the reserved bytes of the IMAGEHEAD frame
+	 * hold the number of data frames which follow it.
+	 * </p>
+	 * 
+	 * <p>
+	 * Images which do not get smaller are sent uncompressed.
+	 * </p>
+	 * 
+	 * @param name        String name of transaction process to generate.
+	 * @param bmp         Image to serialize.
+	 * @param compression One of {@code K_IMG_ENC_RAW}, {@code K_IMG_ENC_RLE} or {@code K_IMG_ENC_LZ}.
+	 * @return Transaction handler for the image, null if assembly failed.
+	 * @throws IllegalArgumentException if the compression is not known.
+	 */
+	public OutgoingTransaction serializeAsBitmap(String name, PBitmap bmp, byte compression) 
+			throws IllegalArgumentException {
+		final int height = bmp.getHeight();
+		final int width = bmp.getWidth();
+		
+		byte encoding = 0x00;
+		int pixelBytes = 0;
+		switch (bmp.getEncoding()) {
+		case RGB565:
+			encoding = K_IMG_ENC_RGB565;
+			pixelBytes = Short.SIZE / Byte.SIZE;
+			break;
+		case ARGB8888:
+			encoding = K_IMG_ENC_ARGB8888;
+			pixelBytes = Integer.SIZE / Byte.SIZE;
+			break;
+		}
+		
+		if (compression != K_IMG_ENC_RAW) {
+			final byte[] packed = KillalotImageCodec.compress(bmp.asByteBuffer(), width * pixelBytes, compression);
+			if (packed.length < bmp.getSizeInBytes()) {
+				final int noOfFrames = 
+						(int) Math.ceil((double) packed.length / (double) KillalotPacket.PAYLOAD_LEN) + 1;
+				
+				if (noOfFrames > IMAGE_PACK_LIMIT) {
+					return null;
+				}
+				
+				return framed(new OutgoingKillalotImageTransaction(name, width, height, 
+						(byte) (encoding | compression), packed, noOfFrames, 2));
+			}
+		}
+				
+		final int noOfFrames = 
+				(int) Math.ceil((double) bmp.getSizeInBytes() / (double) KillalotPacket.PAYLOAD_LEN) + 1;
+		
+		if (noOfFrames > IMAGE_PACK_LIMIT) {
+			return null;
+		}
+		
+		return framed(new OutgoingKillalotImageTransaction(name, bmp, encoding, noOfFrames, 2));
+	}
+
+	/**
+	 * <p>
+	 * Ask the sender of an image to send some of its data frames 
+	 * again, normally the ranges given by a decoder's 
+	 * {@code getMissingImageFrames()}. Each range becomes CTLREQ 
+	 * frames of up to 255 frames each. 
+	 * </p>
+	 * 
+	 * <p>
+	 * The header 2nd byte is {@code K_REQ_RESEND} and the 3rd the data
+	 * type, {@code IMAGE_INDICATOR}. The payload holds the 24 bit index 
+	 * of the first frame and then the number of frames. The receiver 
+	 * reports it as a RESEND request whose code holds the index in its 
+	 * lower 24 bits and the number of frames in its upper 8 bits.
+	 * </p>
+	 * 
+	 * @param name   String name of transaction process to generate.
+	 * @param ranges Ranges of data frames as {first index, count}.
+	 * @return Transaction handler for the request, null if there is nothing to request.
+	 */
+	public OutgoingTransaction serializeResendRequest(String name, List<int[]> ranges) {
+		int noOfPackets = 0;
+		for (int[] range : ranges) {
+			noOfPackets += (range[1] + RESEND_COUNT_LIMIT - 1) / RESEND_COUNT_LIMIT;
+		}
+		if (noOfPackets == 0) {
+			return null;
+		}
+		
+		final byte[] frames = new byte[noOfPackets * KillalotPacket.getDecodedSize()];
+		int frame = 0;
+		for (int[] range : ranges) {
+			for (int first=range[0]; first<range[0]+range[1]; first+=RESEND_COUNT_LIMIT) {
+				final int count = Math.min(RESEND_COUNT_LIMIT, range[0] + range[1] - first);
+				frames[frame] = CTLREQ_INDICATOR;
+				frames[frame + 1] = K_REQ_RESEND;
+				frames[frame + 2] = IMAGE_INDICATOR;
+				
+				final int payload = frame + KillalotPacket.HEADER_LEN;
+				frames[payload] = (byte) ((first >>> 16) & 0xFF);
+				frames[payload + 1] = (byte) ((first >>> 8) & 0xFF);
+				frames[payload + 2] = (byte) (first & 0xFF);
+				frames[payload + 3] = (byte) count;
+				
+				frame += KillalotPacket.getDecodedSize();
+			}
+		}
+		
+		// requests are control data, sent ahead of everything else
+		return framed(new OutgoingKillalotTransaction(name, frames, noOfPackets, 0));
+	}
+	
+	/**
+	 * <p>
+	 * Acknowledge the data frames received so far of a transfer, 
+	 * normally those given by a decoder's {@code getReceivedImageFrames()},
+	 * for a {@code KillalotArqSender} at the other end.
+	 * </p>
+	 * 
+	 * <p>
+	 * The header 2nd byte is {@code K_REQ_ACK}, the 3rd the data type 
+	 * and the 4th the transfer identifier. The payload holds the 24 bit 
+	 * cumulative index, before which every frame was received, then the 
+	 * number of a block of 32 frames following it and a 32 bit bitmap of 
+	 * the frames received in the block, least significant bit first. Block 
+	 * {@code b} starts {@code 1 + 32*b} frames after the cumulative index. 
+	 * One frame is made for each block with frames received in it, and 
+	 * always one for block 0, so each frame stands on its own.
+	 * </p>
+	 * 
+	 * @param name       String name of transaction process to generate.
+	 * @param dataType   Frame type of the data acknowledged, {@code IMAGE_INDICATOR} or {@code BINARY_INDICATOR}.
+	 * @param transferId Transfer identifier given by the head frame.
+	 * @param received   Indices of the data frames received, null if none are expected.
+	 * @return Transaction handler for the acknowledgement, null if there is nothing to acknowledge.
+	 */
+	public OutgoingTransaction serializeAck(String name, byte dataType, int transferId, BitSet received) {
+		if (received == null) {
+			return null;
+		}
+		
+		final int cumulative = received.nextClearBit(0);
+		final int first = cumulative + 1;
+		final int last = received.length() - 1;
+		final int blocks = (last < first) ? 1 : 
+				Math.min((last - first) / ACK_BLOCK_BITS + 1, ACK_BLOCK_LIMIT);
+		
+		final byte[] frames = new byte[blocks * KillalotPacket.getDecodedSize()];
+		int noOfPackets = 0;
+		for (int block=0; block<blocks; block++) {
+			final int start = first + block*ACK_BLOCK_BITS;
+			int bits = 0;
+			for (int i=received.nextSetBit(start); i>=0 && i<start+ACK_BLOCK_BITS; i=received.nextSetBit(i+1)) {
+				bits |= 1 << (i - start);
+			}
+			if (bits == 0 && block > 0) {
+				continue;
+			}
+			
+			final int frame = noOfPackets * KillalotPacket.getDecodedSize();
+			frames[frame] = CTLREQ_INDICATOR;
+			frames[frame + 1] = K_REQ_ACK;
+			frames[frame + 2] = dataType;
+			frames[frame + 3] = (byte) transferId;
+			
+			final int payload = frame + KillalotPacket.HEADER_LEN;
+			frames[payload] = (byte) ((cumulative >>> 16) & 0xFF);
+			frames[payload + 1] = (byte) ((cumulative >>> 8) & 0xFF);
+			frames[payload + 2] = (byte) (cumulative & 0xFF);
+			frames[payload + 3] = (byte) block;
+			frames[payload + 4] = (byte) ((bits >>> 24) & 0xFF);
+			frames[payload + 5] = (byte) ((bits >>> 16) & 0xFF);
+			frames[payload + 6] = (byte) ((bits >>> 8) & 0xFF);
+			frames[payload + 7] = (byte) (bits & 0xFF);
+			noOfPackets++;
+		}
+		
+		// acknowledgements are control data, sent ahead of everything else
+		return framed(new OutgoingKillalotTransaction(name, frames, noOfPackets, 0));
+	}
+	
+	/**
+	 * @param code Code of a RESEND request.
+	 * @return Index of first data frame to send again.
+	 */
+	public static int getResendIndex(int code) {
+		return code & 0x00FFFFFF;
+	}
+	
+	/**
+	 * @param code Code of a RESEND request.
+	 * @return Number of data frames to send again.
+	 */
+	public static int getResendCount(int code) {
+		return code >>> 24;
+	}
+
+	/**
+	 * Binary data begins with a BINARYHEAD frame holding the number
+	 * of data frames and bytes, see {@code OutgoingKillalotBinaryTransaction}.
+	 */
+	@Override
+	public OutgoingTransaction serializeAsBinary(String name, ByteArrayOutputStream data) {
+		
+		final int noOfFrames = (int) Math.ceil(((double) data.size())/((double) KillalotPacket.PAYLOAD_LEN)) + 1;
+		if (noOfFrames > BINARY_PACK_LIMIT) {
+			return null;
+		}
+		
+		return framed(new OutgoingKillalotBinaryTransaction(name, data.toByteArray(), noOfFrames, 3));
+	}
+	
+	private <T extends OutgoingKillalotTransaction> T framed(T trans) {
+		trans.setFrameCrc(mFrameCrc);
+		return trans;
+	}
+	
+	/**
+	 * Copy up to one payload worth of bytes into a frame, 
+	 * leaving the rest of the payload zeroed.
+	 */
+	private static void copyPayload(byte[] src, int srcPos, byte[] frames, int frame) {
+		final int len = Math.min(KillalotPacket.PAYLOAD_LEN, src.length - srcPos);
+		if (len > 0) {
+			System.arraycopy(src, srcPos, frames, frame + KillalotPacket.HEADER_LEN, len);
+		}
+	}
+}
@@ -0,0 +1,654 @@
+package com.tronacadmey.phantom.killalot;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+import com.tronacademy.phantom.messaging.ChannelStateTable;
+import com.tronacademy.phantom.messaging.ImageBufferPool;
+import com.tronacademy.phantom.messaging.IncomingTransaction;
+import com.tronacademy.phantom.messaging.PBitmap;
+import com.tronacademy.phantom.messaging.PBitmap.Encoding;
+import com.tronacademy.phantom.messaging.ProtocolDecoder;
+import com.tronacademy.phantom.messaging.ProtocolDecoder.ErrorType;
+import com.tronacademy.phantom.messaging.ProtocolDecoder.RequestType;
+import com.tronacademy.phantom.messaging.TransactionError;
+
+public class KillalotDecoder implements ProtocolDecoder {
+
+	/**
+	 * Receives acknowledgements of transfers, made by 
+	 * {@code KillalotAssembler.serializeAck} at the other end.
+	 */
+	public interface OnAckListener {
+		/**
+		 * @param dataType   Frame type of the data acknowledged.
+		 * @param transferId Transfer identifier echoed from the head frame.
+		 * @param cumulative Index before which every data frame was received.
+		 * @param block      Number of the block of 32 frames after {@code cumulative}.
+		 * @param bits       Frames received in the block, least significant bit first.
+		 */
+		public void onAck(byte dataType, int transferId, int cumulative, int block, int bits);
+	}
+	
+	/**
+	 * Receives binary data, made by {@code KillalotAssembler.serializeAsBinary}
+	 * at the other end.
+	 */
+	public interface OnBinaryListener {
+		/**
+		 * @param data  Data received, owned by the listener.
+		 * @param error Errors encountered during the transaction.
+		 */
+		public void onRecvBinary(byte[] data, TransactionError error);
+	}
+	
+	private ProtocolDecodeListener mListener;
+	private OnAckListener mAckListener = null;
+	private OnBinaryListener mBinaryListener = null;
+	private ChannelStateTable mChannelTable = null;
+	private boolean mChannelCallbacks = true;
+	private ImageBufferPool mImagePool = null;
+	
+	// frames carry a CRC, and those rejected are counted over the whole link
+	private boolean mFrameCrc = false;
+	private final TransactionError mLinkErrors = new TransactionError(null);
+	
+	// size of scratch buffer used to drain buffers without a backing array
+	private static final int SCRATCH_LEN = 256;
+	
+	// state trackers
+	private boolean inFrame = false;
+	private boolean escaping = false;
+	private final byte[] tempPacket = new byte[KillalotPacket.getDecodedSize() + KillalotPacket.CRC_LEN];
+	private int tempPacketLen = 0;
+	private final KillalotPacket recvPacket = new KillalotPacket();
+	private byte[] scratch = null;
+	
+	// uncompleted transactions (channels are always completed in one frame)
+	private IncomingTransaction commandTransaction = null;
+	private IncomingTransaction imageTransaction = null;
+	private IncomingTransaction binaryTransaction = null;
+	
+	// copy of the latest image received, patched in place by tile frames, never handed to listeners
+	private PBitmap mVideoFrame = null;
+	
+	// stores of the images tile frames deliver when no pool is set
+	private ImageBufferPool mVideoPool = null;
+	
+	// frames of the last image completed, acknowledged until the next one begins
+	private BitSet mLastImageFrames = null;
+	private int mLastImageId = 0;
+	
+	// frames of the last binary data completed, acknowledged until the next one begins
+	private BitSet mLastBinaryFrames = null;
+	private int mLastBinaryId = 0;
+	
+	@Override
+	public String getName() {
+		return "Killalot";
+	}
+	
+	@Override
+	public void setOnProtocolDecodeListener(ProtocolDecodeListener listener) {
+		mListener = listener;
+	}
+	
+	@Override
+	public void setChannelStateTable(ChannelStateTable table, boolean callbacks) {
+		mChannelTable = table;
+		mChannelCallbacks = callbacks;
+	}
+	
+	@Override
+	public void setImageBufferPool(ImageBufferPool pool) {
+		mImagePool = pool;
+	}
+	
+	/**
+	 * @param listener Receiver of acknowledgements, null for none.
+	 */
+	public void setOnAckListener(OnAckListener listener) {
+		mAckListener = listener;
+	}
+	
+	/**
+	 * @param listener Receiver of binary data, null for none.
+	 */
+	public void setOnBinaryListener(OnBinaryListener listener) {
+		mBinaryListener = listener;
+	}
+	
+	/**
+	 * Set whether frames carry a CRC, which is then checked before
+	 * a frame is used. Frames which fail are dropped and counted
+	 * in {@link #getLinkErrors()} and in the errors of each
+	 * transaction in progress. Must match the sender's assembler.
+	 * 
+	 * <p>
+	 * The CRC is checked once per frame, over the unescaped frame, 
+	 * which {@code DecoderBench} puts within 5% of decoding unchecked
+	 * frames. Each frame still grows by 2 bytes on the link, so it is
+	 * worth turning on only for links which corrupt frames.
+	 * </p>
+	 * 
+	 * @param crc Flag indicating whether frames carry a CRC.
+	 */
+	public void setFrameCrc(boolean crc) {
+		mFrameCrc = crc;
+	}
+	
+	/**
+	 * @return Counts of frames dropped since the decoder was created.
+	 */
+	public TransactionError getLinkErrors() {
+		return mLinkErrors;
+	}
+	
+	@Override 
+	public void decodeByte(byte read) {
+		if (inFrame) {
+			inFrameAction(read);
+		} else {
+			if (read == KillalotPacket.SLIP_END) {
+				// start a new packet
+				startFrame();
+			}
+		}
+	}
+	
+	@Override
+	public void decode(byte[] buffer, int offset, int length) {
+		final int end = offset + length;
+		int i = offset;
+		while (i < end) {
+			if (!inFrame) {
+				// skip noise until a frame begins
+				while (i < end && buffer[i] != KillalotPacket.SLIP_END) {
+					i++;
+				}
+				if (i < end) {
+					startFrame();
+					i++;
+				}
+			} else if (escaping) {
+				inFrameAction(buffer[i++]);
+			} else {
+				// copy run of bytes which need no unescaping in one go
+				final int runStart = i;
+				while (i < end && 
+					   buffer[i] != KillalotPacket.SLIP_END && 
+					   buffer[i] != KillalotPacket.SLIP_ESC) {
+					i++;
+				}
+				appendRun(buffer, runStart, i - runStart);
+				if (i < end) {
+					inFrameAction(buffer[i++]);
+				}
+			}
+		}
+	}
+	
+	@Override
+	public void decode(ByteBuffer buffer) {
+		if (buffer.hasArray()) {
+			final int pos = buffer.position();
+			decode(buffer.array(), buffer.arrayOffset() + pos, buffer.remaining());
+			buffer.position(buffer.limit());
+		} else {
+			// direct buffers are drained through a reusable scratch array
+			if (scratch == null) {
+				scratch = new byte[SCRATCH_LEN];
+			}
+			while (buffer.hasRemaining()) {
+				final int len = Math.min(buffer.remaining(), SCRATCH_LEN);
+				buffer.get(scratch, 0, len);
+				decode(scratch, 0, len);
+			}
+		}
+	}
+	
+	private void startFrame() {
+		inFrame = true;
+		escaping = false;
+		tempPacketLen = 0;
+	}
+	
+	private void appendByte(byte b) {
+		// bytes beyond the frame length are ignored
+		if (tempPacketLen < tempPacket.length) {
+			tempPacket[tempPacketLen] = b;
+		}
+		tempPacketLen++;
+	}
+	
+	private void appendRun(byte[] src, int offset, int length) {
+		final int room = tempPacket.length - tempPacketLen;
+		if (room > 0) {
+			System.arraycopy(src, offset, tempPacket, tempPacketLen, Math.min(room, length));
+		}
+		tempPacketLen += length;
+	}
+	
+	private void inFrameAction(byte read) {
+		if (escaping) {
+			// previous character was ESC, only two chars are accepted in this state
+			if (read == KillalotPacket.SLIP_ESC_END) {
+				appendByte(KillalotPacket.SLIP_END);
+			} else if (read == KillalotPacket.SLIP_ESC_ESC) {
+				appendByte(KillalotPacket.SLIP_ESC);
+			}
+			escaping = false;
+		} else {
+			if (read == KillalotPacket.SLIP_END && tempPacketLen == 0) {
+				// back to back END characters, as when joining the stream between 
+				// two frames, the second one begins the frame
+			} else if (read == KillalotPacket.SLIP_END) {
+				endFrame();
+			} else if (read == KillalotPacket.SLIP_ESC) {
+				escaping = true;
+			} else {
+				appendByte(read);
+			}
+		}
+	}
+	
+	private void endFrame() {
+		// kept out of the byte state machine, so checking the CRC once
+		// per frame does not slow down the handling of every byte
+		inFrame = false;
+		if (mFrameCrc) {
+			if (tempPacketLen != KillalotPacket.getDecodedSize() + KillalotPacket.CRC_LEN) {
+				rejectFrame(false);
+			} else if (!KillalotPacket.checkCrc(tempPacket, 0)) {
+				rejectFrame(true);
+			} else {
+				delegatePacketByType(recvPacket.wrap(tempPacket, 0));
+			}
+		} else if (tempPacketLen >= KillalotPacket.getDecodedSize()) {
+			// full packet has been written
+			delegatePacketByType(recvPacket.wrap(tempPacket, 0));
+		}
+	}
+	
+	private void rejectFrame(boolean crc) {
+		// the frame may have been part of any transaction in progress
+		countError(mLinkErrors, crc);
+		if (commandTransaction != null) {
+			countError(commandTransaction.trackErrors(), crc);
+		}
+		if (imageTransaction != null) {
+			countError(imageTransaction.trackErrors(), crc);
+		}
+		if (binaryTransaction != null) {
+			countError(binaryTransaction.trackErrors(), crc);
+		}
+	}
+	
+	private static void countError(TransactionError errors, boolean crc) {
+		if (crc) {
+			errors.countCrcError();
+		} else {
+			errors.countFramingError();
+		}
+	}
+	
+	private void delegatePacketByType(final KillalotPacket recvPacket) {
+		final byte packetType = recvPacket.getType();
+		switch(packetType) {
+		case KillalotAssembler.CHANNEL_INDICATOR:
+			// for channel frames, header 4th byte is first channel index in packet
+			final int startChan = recvPacket.getHeaderByte(3) & 0xFF;
+			if (mChannelTable != null) {
+				mChannelTable.update(startChan, recvPacket.getFrameBuffer(), recvPacket.getPayloadOffset());
+			}
+			if (mListener != null && mChannelCallbacks) {
+				mListener.onRecvChannels(startChan, recvPacket.getPayload());
+			}
+			break;
+		case KillalotAssembler.COMMAND_INDICATOR:
+			handleCommandPacket(recvPacket);
+			break;
+		case KillalotAssembler.CTLREQ_INDICATOR:
+			handleRequestPacket(recvPacket);
+			break;
+		case KillalotAssembler.IMAGEHEAD_INDICATOR:
+			startNewImageTransaction(recvPacket);
+			break;
+		case KillalotAssembler.IMAGE_INDICATOR:
+			// capture only if image transaction is in progress, otherwise ignore
+			if (imageTransaction != null) {
+				if (imageTransaction.capturePacket(recvPacket)) {
+					completeImageTransaction();
+				}
+			}
+			break;
+		case KillalotAssembler.BINARYHEAD_INDICATOR:
+			startNewBinaryTransaction(recvPacket);
+			break;
+		case KillalotAssembler.BINARY_INDICATOR:
+			// capture only if binary transaction is in progress, otherwise ignore
+			if (binaryTransaction != null) {
+				if (binaryTransaction.capturePacket(recvPacket)) {
+					completeBinaryTransaction();
+				}
+			}
+			break;
+		}
+	}
+	
+	/**
+	 * Data frames of the image being received which have not 
+	 * arrived yet, to be asked for again with 
+	 * {@code KillalotAssembler.serializeResendRequest}.
+	 * 
+	 * @return Ranges of data frames as {first index, count}, empty if none.
+	 */
+	public List<int[]> getMissingImageFrames() {
+		if (imageTransaction instanceof IncomingKillalotIndexedTransaction) {
+			return ((IncomingKillalotIndexedTransaction) imageTransaction).getMissingRanges();
+		}
+		return new ArrayList<int[]>();
+	}
+	
+	/**
+	 * Data frames received of the image being received, or of 
+	 * the last image completed, to be acknowledged with
+	 * {@code KillalotAssembler.serializeAck}.
+	 * 
+	 * @return Indices of the data frames received, null if no image has begun.
+	 */
+	public BitSet getReceivedImageFrames() {
+		if (imageTransaction instanceof IncomingKillalotIndexedTransaction) {
+			return ((IncomingKillalotIndexedTransaction) imageTransaction).getReceived();
+		}
+		return (mLastImageFrames != null) ? (BitSet) mLastImageFrames.clone() : null;
+	}
+	
+	/**
+	 * @return Transfer identifier of the image given by {@link #getReceivedImageFrames()}.
+	 */
+	public int getImageTransferId() {
+		if (imageTransaction instanceof IncomingKillalotIndexedTransaction) {
+			return ((IncomingKillalotIndexedTransaction) imageTransaction).getTransferId();
+		}
+		return mLastImageId;
+	}
+	
+	/**
+	 * Data frames received of the binary data being received, or
+	 * of the last binary data completed, to be acknowledged with
+	 * {@code KillalotAssembler.serializeAck}.
+	 * 
+	 * @return Indices of the data frames received, null if no binary data has begun.
+	 */
+	public BitSet getReceivedBinaryFrames() {
+		if (binaryTransaction != null) {
+			return ((IncomingKillalotIndexedTransaction) binaryTransaction).getReceived();
+		}
+		return (mLastBinaryFrames != null) ? (BitSet) mLastBinaryFrames.clone() : null;
+	}
+	
+	/**
+	 * @return Transfer identifier of the binary data given by {@link #getReceivedBinaryFrames()}.
+	 */
+	public int getBinaryTransferId() {
+		if (binaryTransaction != null) {
+			return ((IncomingKillalotIndexedTransaction) binaryTransaction).getTransferId();
+		}
+		return mLastBinaryId;
+	}
+	
+	private void handleRequestPacket(final KillalotPacket recvPacket) {
+		if (recvPacket.getHeaderByte(1) == KillalotAssembler.K_REQ_ACK) {
+			if (mAckListener != null) {
+				final int cumulative = ((recvPacket.getPayloadByte(0) & 0xFF) << 16) | 
+						               ((recvPacket.getPayloadByte(1) & 0xFF) << 8) | 
+						               (recvPacket.getPayloadByte(2) & 0xFF);
+				final int bits = ((recvPacket.getPayloadByte(4) & 0xFF) << 24) | 
+						         ((recvPacket.getPayloadByte(5) & 0xFF) << 16) | 
+						         ((recvPacket.getPayloadByte(6) & 0xFF) << 8) | 
+						         (recvPacket.getPayloadByte(7) & 0xFF);
+				mAckListener.onAck(recvPacket.getHeaderByte(2), recvPacket.getHeaderByte(3) & 0xFF, 
+						cumulative, recvPacket.getPayloadByte(3) & 0xFF, bits);
+			}
+			return;
+		}
+		if (mListener == null) {
+			return;
+		}
+		
+		switch (recvPacket.getHeaderByte(1)) {
+		case KillalotAssembler.K_REQ_STOP:
+			mListener.onRequest(RequestType.STOP, 0);
+			break;
+		case KillalotAssembler.K_REQ_RESEND:
+			// first frame index in the lower 24 bits, number of frames in the upper 8
+			final int code = ((recvPacket.getPayloadByte(0) & 0xFF) << 16) | 
+					         ((recvPacket.getPayloadByte(1) & 0xFF) << 8) | 
+					         (recvPacket.getPayloadByte(2) & 0xFF) | 
+					         ((recvPacket.getPayloadByte(3) & 0xFF) << 24);
+			mListener.onRequest(RequestType.RESEND, code);
+			break;
+		}
+	}
+	
+	private void handleCommandPacket(final KillalotPacket recvPacket) {
+		if (commandTransaction != null) {
+			// command transaction already in progress
+			if (commandTransaction.capturePacket(recvPacket)) {
+				// transaction is complete
+				if (mListener != null) {
+					mListener.onRecvCommands((String) commandTransaction.getDecodedResult(), 
+							commandTransaction.getTransactionErrors());
+				}
+				
+				// reset command transaction state
+				commandTransaction = null;
+			}
+		} else {
+			// start a new command transaction
+			final byte chars = recvPacket.getHeaderByte(3);
+			// number of characters cannot be negative
+			final int ichars = chars & 0xFF; 
+			final int noOfPackets = (int) Math.ceil((double) ichars / (double) KillalotPacket.PAYLOAD_LEN);
+			commandTransaction = new IncomingKillalotCommandTransaction(noOfPackets, ichars);
+			if (commandTransaction.capturePacket(recvPacket)) {
+				// transaction is complete
+				if (mListener != null) {
+					mListener.onRecvCommands((String) commandTransaction.getDecodedResult(), 
+							commandTransaction.getTransactionErrors());
+					
+					commandTransaction = null;
+				}
+			}
+		}
+	}
+	
+	private void completeImageTransaction() {
+		final IncomingKillalotIndexedTransaction completed = (IncomingKillalotIndexedTransaction) imageTransaction;
+		mLastImageFrames = completed.getReceived();
+		mLastImageId = completed.getTransferId();
+		
+		final PBitmap bmp = (PBitmap) completed.getDecodedResult();
+		imageTransaction = null;
+		
+		if (bmp == null) {
+			// compressed stream did not decode, keep patching the last good image
+			if (mListener != null) {
+				mListener.onError(ErrorType.SYS_DECODE_ERR, KillalotAssembler.IMAGE_INDICATOR);
+			}
+			return;
+		}
+		
+		// listeners may keep, hand to other threads or recycle what they are given,
+		// so tile frames only ever patch a copy held here
+		final PBitmap delivered;
+		if (completed instanceof IncomingKillalotTileTransaction) {
+			delivered = newImage(bmp.getEncoding(), bmp.getWidth(), bmp.getHeight());
+			delivered.asByteBuffer().put(mVideoFrame.asByteBuffer());
+		} else {
+			if (mVideoFrame == null || mVideoFrame.getWidth() != bmp.getWidth() || 
+					mVideoFrame.getHeight() != bmp.getHeight() || mVideoFrame.getEncoding() != bmp.getEncoding()) {
+				mVideoFrame = new PBitmap(bmp.getEncoding(), bmp.getWidth(), bmp.getHeight());
+			}
+			mVideoFrame.asByteBuffer().put(bmp.asByteBuffer());
+			delivered = bmp;
+		}
+		if (mListener != null) {
+			mListener.onRecvBitmap(delivered, completed.getTransactionErrors());
+		} else {
+			delivered.recycle();
+		}
+	}
+	
+	/**
+	 * Tile frames arrive for every image of a video stream, so their
+	 * images always come from a pool, this decoder's own if none is
+	 * set. Listeners which recycle them then receive the stream without
+	 * an allocation per image, others cost one image allocation each.
+	 * 
+	 * @return Image to deliver the video frame in.
+	 */
+	private PBitmap newImage(Encoding encoding, int width, int height) {
+		if (mImagePool != null) {
+			return PBitmap.fromPool(mImagePool, encoding, width, height);
+		}
+		if (mVideoPool == null) {
+			mVideoPool = new ImageBufferPool();
+		}
+		return PBitmap.fromPool(mVideoPool, encoding, width, height);
+	}
+	
+	private void completeBinaryTransaction() {
+		final IncomingKillalotIndexedTransaction completed = (IncomingKillalotIndexedTransaction) binaryTransaction;
+		mLastBinaryFrames = completed.getReceived();
+		mLastBinaryId = completed.getTransferId();
+		binaryTransaction = null;
+		
+		if (mBinaryListener != null) {
+			mBinaryListener.onRecvBinary((byte[]) completed.getDecodedResult(), completed.getTransactionErrors());
+		}
+	}
+	
+	private void startNewBinaryTransaction(KillalotPacket recvPacket) {
+		// echoed in acknowledgements, tagged head frames are sent again when acknowledgements are lost
+		final int transferId = recvPacket.getHeaderByte(3) & 0xFF;
+		if (transferId != 0 && transferId == getBinaryTransferId() && 
+				(binaryTransaction != null || mLastBinaryFrames != null)) {
+			return;
+		}
+		
+		// previous data lost frames, it is dropped
+		// TODO: raise error for creating new binary transaction before completing previous
+		binaryTransaction = null;
+		mLastBinaryFrames = null;
+		
+		final int noOfFrames = ((recvPacket.getPayloadByte(0) & 0xFF) << 16) | 
+				               ((recvPacket.getPayloadByte(1) & 0xFF) << 8) | 
+				               (recvPacket.getPayloadByte(2) & 0xFF);
+		final int length = ((recvPacket.getPayloadByte(3) & 0xFF) << 24) | 
+				           ((recvPacket.getPayloadByte(4) & 0xFF) << 16) | 
+				           ((recvPacket.getPayloadByte(5) & 0xFF) << 8) | 
+				           (recvPacket.getPayloadByte(6) & 0xFF);
+		if (length < 0 || length > noOfFrames * KillalotPacket.PAYLOAD_LEN) {
+			if (mListener != null) {
+				mListener.onError(ErrorType.SYS_DECODE_ERR, KillalotAssembler.BINARYHEAD_INDICATOR);
+			}
+			return;
+		}
+		
+		final IncomingKillalotBinaryTransaction binary = new IncomingKillalotBinaryTransaction(noOfFrames, length);
+		binary.setTransferId(transferId);
+		binaryTransaction = binary;
+		if (noOfFrames == 0) {
+			// no data to follow
+			completeBinaryTransaction();
+		}
+	}
+	
+	private void startNewImageTransaction(KillalotPacket recvPacket) {
+		// echoed in acknowledgements, tagged head frames are sent again when acknowledgements are lost
+		final int transferId = recvPacket.getHeaderByte(3) & 0xFF;
+		if (transferId != 0 && transferId == getImageTransferId() && 
+				(imageTransaction != null || mLastImageFrames != null)) {
+			return;
+		}
+		
+		if (imageTransaction != null) {
+			// previous image lost frames, drop it along with any image it was patching
+			// TODO: raise error for creating new image transaction before completing previous
+			if (imageTransaction instanceof IncomingKillalotTileTransaction) {
+				mVideoFrame = null;
+			} else {
+				((IncomingKillalotImageTransaction) imageTransaction).abandon();
+			}
+			imageTransaction = null;
+		}
+		mLastImageFrames = null;
+		
+		final int width = ((recvPacket.getPayloadByte(3) & 0xFF) << 8) | (recvPacket.getPayloadByte(4) & 0xFF);
+		final int height = ((recvPacket.getPayloadByte(5) & 0xFF) << 8) | (recvPacket.getPayloadByte(6) & 0xFF);
+		final byte bEnc = recvPacket.getPayloadByte(7);
+		final byte compression = (byte) (bEnc & ~KillalotAssembler.K_IMG_ENC_PIXEL_MASK);
+		
+		Encoding encoding = null;
+		int noOfFrames = 0;
+		switch ((byte) (bEnc & KillalotAssembler.K_IMG_ENC_PIXEL_MASK)) {
+		case KillalotAssembler.K_IMG_ENC_RGB565:
+			// one pixel takes up 16 bits, which is the size of a short
+			noOfFrames = (int) Math.ceil(
+					(double) (width * height * Short.SIZE) /
+					(double) (Byte.SIZE * KillalotPacket.PAYLOAD_LEN) );
+			encoding = Encoding.RGB565;
+			break;
+		case KillalotAssembler.K_IMG_ENC_ARGB8888:
+			// one pixel takes up 32 bits, which is the size of an integer
+			noOfFrames = (int) Math.ceil(
+					(double) (width * height * Integer.SIZE) / 
+					(double) (Byte.SIZE * KillalotPacket.PAYLOAD_LEN) );
+			encoding = Encoding.ARGB8888;
+			break;
+		}
+		
+		switch (compression) {
+		case KillalotAssembler.K_IMG_ENC_RAW:
+			break;
+		case KillalotAssembler.K_IMG_ENC_RLE:
+		case KillalotAssembler.K_IMG_ENC_LZ:
+			// compressed images give their number of data frames in the reserved bytes
+			noOfFrames = ((recvPacket.getPayloadByte(0) & 0xFF) << 16) | 
+					     ((recvPacket.getPayloadByte(1) & 0xFF) << 8) | 
+					     (recvPacket.getPayloadByte(2) & 0xFF);
+			break;
+		case KillalotAssembler.K_IMG_ENC_TILES:
+			// tiles patch the latest image, which must match
+			if (mVideoFrame == null || mVideoFrame.getWidth() != width || 
+					mVideoFrame.getHeight() != height || mVideoFrame.getEncoding() != encoding) {
+				if (mListener != null) {
+					mListener.onError(ErrorType.SYS_DECODE_ERR, KillalotAssembler.IMAGEHEAD_INDICATOR);
+				}
+				return;
+			}
+			noOfFrames = ((recvPacket.getPayloadByte(0) & 0xFF) << 16) | 
+					     ((recvPacket.getPayloadByte(1) & 0xFF) << 8) | 
+					     (recvPacket.getPayloadByte(2) & 0xFF);
+			final IncomingKillalotTileTransaction tiles = new IncomingKillalotTileTransaction(noOfFrames, mVideoFrame);
+			tiles.setTransferId(transferId);
+			imageTransaction = tiles;
+			if (noOfFrames == 0) {
+				// image is unchanged
+				completeImageTransaction();
+			}
+			return;
+		default:
+			// TODO: raise error for unknown image compression
+			return;
+		}
+		final IncomingKillalotImageTransaction image = new IncomingKillalotImageTransaction(noOfFrames, 
+				width, height, encoding, compression, mImagePool);
+		image.setTransferId(transferId);
+		imageTransaction = image;
+	}
+}
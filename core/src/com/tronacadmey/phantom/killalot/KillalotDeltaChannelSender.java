@@ -0,0 +1,138 @@
+package com.tronacadmey.phantom.killalot;
+
+import com.tronacademy.phantom.messaging.OutgoingTransaction;
+
+/**
+ * <p>
+ * Stateful alternative to {@code KillalotAssembler.serializeAsChannels}
+ * for links where airtime is scarce. Each channel frame names its first
+ * channel, so receivers already merge frames into their channel state.
+ * This sender therefore only emits the frames whose 8 channel slice has
+ * changed since it was last sent.
+ * </p>
+ *
+ * <p>
+ * Every {@code keyframeInterval} ticks all frames are sent regardless,
+ * so a receiver recovers from lost frames. A tick where nothing changed
+ * gives a transaction with no packets.
+ * </p>
+ */
+public class KillalotDeltaChannelSender {
+
+	private final int mKeyframeInterval;
+	
+	// last transmitted channel stream, null until the first keyframe
+	private byte[] mLastSent = null;
+	private int mTicksToKeyframe = 0;
+	private boolean mFrameCrc = false;
+	
+	// statistics
+	private long mPacketsSent = 0;
+	private long mPacketsSuppressed = 0;
+	
+	/**
+	 * @param keyframeInterval Number of ticks between full transmissions, at least 1.
+	 */
+	public KillalotDeltaChannelSender(int keyframeInterval) {
+		mKeyframeInterval = Math.max(keyframeInterval, 1);
+	}
+	
+	/**
+	 * Make the next tick send every frame.
+	 */
+	public void forceKeyframe() {
+		mTicksToKeyframe = 0;
+	}
+	
+	/**
+	 * @param crc Flag indicating whether frames are written with a CRC, 
+	 *            for links whose decoder checks it.
+	 */
+	public void setFrameCrc(boolean crc) {
+		mFrameCrc = crc;
+	}
+	
+	/**
+	 * Assemble the frames of a channel stream which changed since last tick.
+	 *
+	 * @param name          String name of transaction process to generate.
+	 * @param channelStream The control channel stream.
+	 * @return Transaction handler for the changed frames, null if assembly failed.
+	 */
+	public OutgoingTransaction serializeAsChannels(String name, byte[] channelStream) {
+		final int noOfPackets = (int) Math.ceil((double) channelStream.length /
+								(double) KillalotPacket.PAYLOAD_LEN);
+		
+		if (noOfPackets > KillalotAssembler.CHANNEL_PACK_LIMIT) {
+			return null;
+		}
+		
+		// stream size changed, receivers need a full update
+		if (mLastSent == null || mLastSent.length != channelStream.length) {
+			mLastSent = new byte[channelStream.length];
+			mTicksToKeyframe = 0;
+		}
+		
+		final boolean keyframe = (mTicksToKeyframe <= 0);
+		mTicksToKeyframe = keyframe ? mKeyframeInterval - 1 : mTicksToKeyframe - 1;
+		
+		// count changed slices first so frames are allocated once
+		int changed = 0;
+		for (int i=0; i<noOfPackets; i++) {
+			if (keyframe || sliceChanged(channelStream, i)) {
+				changed++;
+			}
+		}
+		
+		final byte[] frames = new byte[changed * KillalotPacket.getDecodedSize()];
+		int frame = 0;
+		for (int i=0; i<noOfPackets; i++) {
+			if (!keyframe && !sliceChanged(channelStream, i)) {
+				continue;
+			}
+			
+			// for channel frames, header 4th byte is first channel index in packet
+			frames[frame] = KillalotAssembler.CHANNEL_INDICATOR;
+			frames[frame + 3] = (byte) (i*KillalotPacket.PAYLOAD_LEN);
+			
+			final int start = i * KillalotPacket.PAYLOAD_LEN;
+			final int len = Math.min(KillalotPacket.PAYLOAD_LEN, channelStream.length - start);
+			System.arraycopy(channelStream, start, frames, frame + KillalotPacket.HEADER_LEN, len);
+			System.arraycopy(channelStream, start, mLastSent, start, len);
+			
+			frame += KillalotPacket.getDecodedSize();
+		}
+		
+		mPacketsSent += changed;
+		mPacketsSuppressed += noOfPackets - changed;
+		
+		final OutgoingKillalotTransaction trans = new OutgoingKillalotTransaction(name, frames, changed, 0);
+		trans.setFrameCrc(mFrameCrc);
+		return trans;
+	}
+	
+	/**
+	 * @return Number of channel packets emitted so far.
+	 */
+	public long getPacketsSent() {
+		return mPacketsSent;
+	}
+	
+	/**
+	 * @return Number of unchanged channel packets not sent so far.
+	 */
+	public long getPacketsSuppressed() {
+		return mPacketsSuppressed;
+	}
+	
+	private boolean sliceChanged(byte[] channelStream, int slice) {
+		final int start = slice * KillalotPacket.PAYLOAD_LEN;
+		final int end = Math.min(start + KillalotPacket.PAYLOAD_LEN, channelStream.length);
+		for (int i=start; i<end; i++) {
+			if (channelStream[i] != mLastSent[i]) {
+				return true;
+			}
+		}
+		return false;
+	}
+}
@@ -0,0 +1,212 @@
+package com.tronacadmey.phantom.killalot;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * <p>
+ * Compressors for the pixel stream of Killalot images, as held
+ * by {@code PBitmap} and sent by uncompressed images.
+ * </p>
+ *
+ * <p>
+ * Two compressions are available, chosen by the high nibble of
+ * the IMAGEHEAD encoding byte:
+ * <ul>
+ * 	<li>{@code K_IMG_ENC_RLE}: Each byte has the byte one row above
+ * 	    subtracted from it, then the result is run length encoded.
+ * 	    A control byte below 128 is followed by that many plus one
+ * 	    literal bytes, otherwise the next byte repeats the control
+ * 	    byte minus 125 times. Cheap, and suits flat images.</li>
+ * 	<li>{@code K_IMG_ENC_LZ}: LZ77 in the LZ4 sequence layout. A token
+ * 	    holds the literal count in its high nibble and the match length
+ * 	    less 4 in its low nibble, a nibble of 15 is extended by bytes
+ * 	    added on until one is not 255. The literals follow, then a
+ * 	    big endian 16 bit match offset and the match length extension.
+ * 	    The last sequence has literals only. Suits camera frames.</li>
+ * </ul>
+ * Both are decoded with {@link KillalotImageInflater}.
+ * </p>
+ */
+public class KillalotImageCodec {
+
+	private static final String compressionErrMsg = "Unknown image compression 0x%02X";
+	
+	// RLE runs and literals
+	private static final int RLE_MIN_RUN = 3;
+	private static final int RLE_MAX_RUN = 130;
+	private static final int RLE_MAX_LITERAL = 128;
+	
+	// LZ matching
+	private static final int LZ_MIN_MATCH = 4;
+	private static final int LZ_MAX_OFFSET = 65535;
+	private static final int LZ_HASH_BITS = 12;
+	
+	private KillalotImageCodec() {
+	}
+	
+	/**
+	 * Compress the pixel stream of an image.
+	 *
+	 * @param pixels      Pixel stream of the image, from position zero to its capacity.
+	 * @param rowBytes    Length of one row of the image in bytes.
+	 * @param compression One of {@code K_IMG_ENC_RLE} or {@code K_IMG_ENC_LZ}.
+	 * @return Compressed pixel stream.
+	 * @throws IllegalArgumentException if the compression is not known.
+	 */
+	public static byte[] compress(ByteBuffer pixels, int rowBytes, byte compression)
+			throws IllegalArgumentException {
+		
+		switch (compression) {
+		case KillalotAssembler.K_IMG_ENC_RLE:
+			// filtered in place, so always on a copy
+			return packRle(filterRows(toBytes(pixels, null), rowBytes));
+		case KillalotAssembler.K_IMG_ENC_LZ:
+			// only read, so a whole backing array is used as it is
+			if (pixels.hasArray() && pixels.arrayOffset() == 0 && pixels.array().length == pixels.capacity()) {
+				return packLz(pixels.array());
+			}
+			return packLz(toBytes(pixels, null));
+		default:
+			throw new IllegalArgumentException(String.format(compressionErrMsg, compression & 0xFF));
+		}
+	}
+	
+	/**
+	 * Copy a pixel stream into an array.
+	 * 
+	 * @param pixels Pixel stream of the image, from position zero to its capacity.
+	 * @param dst    Array to write to, or null to allocate one.
+	 * @return Copy of the pixel stream.
+	 */
+	static byte[] toBytes(ByteBuffer pixels, byte[] dst) {
+		final byte[] raw = (dst != null) ? dst : new byte[pixels.capacity()];
+		final ByteBuffer src = pixels.duplicate();
+		src.clear();
+		src.get(raw, 0, src.capacity());
+		return raw;
+	}
+	
+	/**
+	 * Subtract the byte one row above from every byte, working
+	 * upwards so each row is taken from the original above it.
+	 */
+	private static byte[] filterRows(byte[] raw, int rowBytes) {
+		for (int i=raw.length-1; i>=rowBytes; i--) {
+			raw[i] -= raw[i - rowBytes];
+		}
+		return raw;
+	}
+	
+	private static byte[] packRle(byte[] src) {
+		// worst case is all literals, one control byte per 128
+		final byte[] dst = new byte[src.length + src.length / RLE_MAX_LITERAL + 1];
+		int out = 0;
+		int anchor = 0;
+		int i = 0;
+		while (i < src.length) {
+			// length of run starting here
+			int run = 1;
+			while (i + run < src.length && run < RLE_MAX_RUN && src[i + run] == src[i]) {
+				run++;
+			}
+			
+			if (run < RLE_MIN_RUN) {
+				i += run;
+				continue;
+			}
+			
+			out = putRleLiterals(src, anchor, i, dst, out);
+			dst[out++] = (byte) (run - RLE_MIN_RUN + RLE_MAX_LITERAL);
+			dst[out++] = src[i];
+			i += run;
+			anchor = i;
+		}
+		out = putRleLiterals(src, anchor, src.length, dst, out);
+		
+		return Arrays.copyOf(dst, out);
+	}
+	
+	private static int putRleLiterals(byte[] src, int start, int end, byte[] dst, int out) {
+		while (start < end) {
+			final int len = Math.min(end - start, RLE_MAX_LITERAL);
+			dst[out++] = (byte) (len - 1);
+			System.arraycopy(src, start, dst, out, len);
+			out += len;
+			start += len;
+		}
+		return out;
+	}
+	
+	private static byte[] packLz(byte[] src) {
+		// worst case is a single sequence of literals
+		final byte[] dst = new byte[src.length + src.length / 255 + 16];
+		
+		// last position each hashed 4 byte sequence was seen at, plus one
+		final int[] table = new int[1 << LZ_HASH_BITS];
+		
+		int out = 0;
+		int anchor = 0;
+		int i = 0;
+		while (i + LZ_MIN_MATCH <= src.length) {
+			final int seq = readInt(src, i);
+			final int hash = (seq * -1640531535) >>> (Integer.SIZE - LZ_HASH_BITS);
+			final int ref = table[hash] - 1;
+			table[hash] = i + 1;
+			
+			if (ref < 0 || i - ref > LZ_MAX_OFFSET || readInt(src, ref) != seq) {
+				i++;
+				continue;
+			}
+			
+			int len = LZ_MIN_MATCH;
+			while (i + len < src.length && src[ref + len] == src[i + len]) {
+				len++;
+			}
+			
+			// token, literals, offset, match length extension
+			final int literals = i - anchor;
+			final int matchLen = len - LZ_MIN_MATCH;
+			dst[out++] = (byte) ((Math.min(literals, 15) << 4) | Math.min(matchLen, 15));
+			out = putLzLength(literals, dst, out);
+			System.arraycopy(src, anchor, dst, out, literals);
+			out += literals;
+			dst[out++] = (byte) (((i - ref) >>> 8) & 0xFF);
+			dst[out++] = (byte) ((i - ref) & 0xFF);
+			out = putLzLength(matchLen, dst, out);
+			
+			i += len;
+			anchor = i;
+		}
+		
+		// trailing literals, the receiver knows the image is complete
+		final int literals = src.length - anchor;
+		if (literals > 0) {
+			dst[out++] = (byte) (Math.min(literals, 15) << 4);
+			out = putLzLength(literals, dst, out);
+			System.arraycopy(src, anchor, dst, out, literals);
+			out += literals;
+		}
+		
+		return Arrays.copyOf(dst, out);
+	}
+	
+	private static int putLzLength(int len, byte[] dst, int out) {
+		if (len >= 15) {
+			len -= 15;
+			while (len >= 255) {
+				dst[out++] = (byte) 255;
+				len -= 255;
+			}
+			dst[out++] = (byte) len;
+		}
+		return out;
+	}
+	
+	private static int readInt(byte[] src, int i) {
+		return ((src[i] & 0xFF) << 24) |
+			   ((src[i+1] & 0xFF) << 16) |
+			   ((src[i+2] & 0xFF) << 8) |
+			   (src[i+3] & 0xFF);
+	}
+}
@@ -0,0 +1,200 @@
+package com.tronacadmey.phantom.killalot;
+
+/**
+ * <p>
+ * Streaming decoder for pixel streams compressed by
+ * {@link KillalotImageCodec}. Payloads are fed in as they
+ * arrive and decoded straight into the image, so nothing
+ * else is buffered. Sequences may be split
+ * across payloads at any byte.
+ * </p>
+ *
+ * <p>
+ * Decoding stops once the output is full, so zero padding
+ * at the end of the last frame is ignored. Data which does
+ * not decode into the output also stops decoding, and the
+ * inflater never reports being finished.
+ * </p>
+ */
+public class KillalotImageInflater {
+
+	private static final String compressionErrMsg = "Unknown image compression 0x%02X";
+	
+	// decoder states
+	private static final int RLE_CONTROL = 0;
+	private static final int RLE_LITERAL = 1;
+	private static final int RLE_RUN = 2;
+	private static final int LZ_TOKEN = 3;
+	private static final int LZ_LITERAL_EXT = 4;
+	private static final int LZ_LITERAL = 5;
+	private static final int LZ_OFFSET_HI = 6;
+	private static final int LZ_OFFSET_LO = 7;
+	private static final int LZ_MATCH_EXT = 8;
+	private static final int FAILED = 9;
+	
+	// output is mLength bytes of mOut from mStart, mPos is relative to mStart
+	private final byte[] mOut;
+	private final int mStart;
+	private final int mLength;
+	private final int mRowBytes;
+	private int mPos = 0;
+	
+	private int mState;
+	private int mCount;
+	private int mMatchLen;
+	private int mOffset;
+	
+	/**
+	 * @param compression One of {@code K_IMG_ENC_RLE} or {@code K_IMG_ENC_LZ}.
+	 * @param dst         Array to decode the pixel stream into.
+	 * @param offset      Index in {@code dst} of the first pixel byte.
+	 * @param rawLength   Length in bytes of the uncompressed pixel stream.
+	 * @param rowBytes    Length of one row of the image in bytes.
+	 * @throws IllegalArgumentException if the compression is not known.
+	 */
+	public KillalotImageInflater(byte compression, byte[] dst, int offset, int rawLength, int rowBytes)
+			throws IllegalArgumentException {
+		
+		switch (compression) {
+		case KillalotAssembler.K_IMG_ENC_RLE:
+			mState = RLE_CONTROL;
+			break;
+		case KillalotAssembler.K_IMG_ENC_LZ:
+			mState = LZ_TOKEN;
+			break;
+		default:
+			throw new IllegalArgumentException(String.format(compressionErrMsg, compression & 0xFF));
+		}
+		
+		mOut = dst;
+		mStart = offset;
+		mLength = rawLength;
+		mRowBytes = rowBytes;
+	}
+	
+	/**
+	 * Decode the next part of the compressed stream.
+	 *
+	 * @param src    Buffer holding compressed data.
+	 * @param offset Index of first byte in {@code src}.
+	 * @param length Number of bytes to decode.
+	 */
+	public void inflate(byte[] src, int offset, int length) {
+		final int end = offset + length;
+		int i = offset;
+		while (i < end && mPos < mLength) {
+			switch (mState) {
+			case RLE_CONTROL: {
+				final int control = src[i++] & 0xFF;
+				if (control < 128) {
+					mCount = control + 1;
+					mState = RLE_LITERAL;
+				} else {
+					mCount = control - 125;
+					mState = RLE_RUN;
+				}
+				break;
+			}
+			case RLE_LITERAL: {
+				final int len = Math.min(Math.min(mCount, end - i), mLength - mPos);
+				for (int k=0; k<len; k++) {
+					putFiltered(src[i++]);
+				}
+				mCount -= len;
+				if (mCount == 0) {
+					mState = RLE_CONTROL;
+				}
+				break;
+			}
+			case RLE_RUN: {
+				final byte value = src[i++];
+				final int len = Math.min(mCount, mLength - mPos);
+				for (int k=0; k<len; k++) {
+					putFiltered(value);
+				}
+				mState = RLE_CONTROL;
+				break;
+			}
+			case LZ_TOKEN: {
+				final int token = src[i++] & 0xFF;
+				mCount = token >>> 4;
+				mMatchLen = token & 0x0F;
+				mState = (mCount == 15) ? LZ_LITERAL_EXT : LZ_LITERAL;
+				break;
+			}
+			case LZ_LITERAL_EXT: {
+				final int ext = src[i++] & 0xFF;
+				mCount += ext;
+				if (ext != 255) {
+					mState = LZ_LITERAL;
+				}
+				break;
+			}
+			case LZ_LITERAL: {
+				final int len = Math.min(Math.min(mCount, end - i), mLength - mPos);
+				System.arraycopy(src, i, mOut, mStart + mPos, len);
+				i += len;
+				mPos += len;
+				mCount -= len;
+				if (mCount == 0) {
+					mState = LZ_OFFSET_HI;
+				}
+				break;
+			}
+			case LZ_OFFSET_HI:
+				mOffset = (src[i++] & 0xFF) << 8;
+				mState = LZ_OFFSET_LO;
+				break;
+			case LZ_OFFSET_LO:
+				mOffset |= src[i++] & 0xFF;
+				if (mMatchLen == 15) {
+					mState = LZ_MATCH_EXT;
+				} else {
+					copyMatch();
+				}
+				break;
+			case LZ_MATCH_EXT: {
+				final int ext = src[i++] & 0xFF;
+				mMatchLen += ext;
+				if (ext != 255) {
+					copyMatch();
+				}
+				break;
+			}
+			default:
+				// corrupt stream, ignore the rest
+				return;
+			}
+		}
+	}
+	
+	/**
+	 * @return Flag indicating whether the whole image has been decoded.
+	 */
+	public boolean isFinished() {
+		return mPos == mLength && mState != FAILED;
+	}
+	
+	private void putFiltered(byte value) {
+		final int at = mStart + mPos;
+		mOut[at] = (mPos >= mRowBytes) ? (byte) (value + mOut[at - mRowBytes]) : value;
+		mPos++;
+	}
+	
+	private void copyMatch() {
+		final int len = Math.min(mMatchLen + 4, mLength - mPos);
+		if (mOffset == 0 || mOffset > mPos) {
+			mState = FAILED;
+			return;
+		}
+		
+		// byte by byte as the match may overlap what it is writing
+		int to = mStart + mPos;
+		int from = to - mOffset;
+		for (int k=0; k<len; k++) {
+			mOut[to++] = mOut[from++];
+		}
+		mPos += len;
+		mState = LZ_TOKEN;
+	}
+}
@@ -0,0 +1,420 @@
+package com.tronacadmey.phantom.killalot;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import com.tronacademy.phantom.messaging.Packet;
+
+/**
+ * Packet structure for SLIP protocol developed for use 
+ * with project Killalot. Frame format is:
+ * <ul>
+ * 	<li>4 bytes header</li>
+ * 	<li>8 bytes payload</li>
+ * </ul>
+ * SLIP END characters are both appended and prepended to 
+ * the byte stream to delimit the packet.
+ * 
+ * <p>
+ * ESC character defined by SLIP as 0xDB, prefixes bytes to 
+ * allow 0xC0 and 0xDB characters to appear inside the frame
+ * but get replaced by 0xDC and 0xDD respectively.
+ * </p>
+ * 
+ * <p>
+ * Links with corruption may append a 16 bit CRC of the header 
+ * and payload to each frame, most significant byte first, 
+ * before the closing END character. Both ends must agree on
+ * whether frames carry it.
+ * </p>
+ * 
+ * @author George Xian
+ * @since 2014-07-08
+ *
+ */
+public class KillalotPacket implements Packet {
+	
+	// SLIP values
+	public static final int HEADER_LEN = 4;
+	public static final int PAYLOAD_LEN = 8;
+	public static final int WORST_CASE_PACKET_LEN = 26;
+	
+	// CRC-16/CCITT-FALSE of header and payload, on links which check frames
+	public static final int CRC_LEN = 2;
+	public static final int WORST_CASE_CRC_PACKET_LEN = 30;
+	private static final int CRC_POLY = 0x1021;
+	private static final int CRC_INIT = 0xFFFF;
+	
+	// CRC of each byte value followed by n zero bytes at [n*256 + value], 
+	// so a whole frame is taken at a time with no lookup waiting on another
+	private static final int CRC_SLICES = HEADER_LEN + PAYLOAD_LEN;
+	private static final int[] CRC_TABLE = new int[CRC_SLICES * 256];
+	
+	// the CRC is linear, so the initial value adds the same to the CRC of every frame
+	private static final int CRC_INIT_TERM;
+	
+	static {
+		for (int i=0; i<256; i++) {
+			int crc = i << 8;
+			for (int bit=0; bit<Byte.SIZE; bit++) {
+				crc = ((crc & 0x8000) != 0) ? (crc << 1) ^ CRC_POLY : crc << 1;
+			}
+			CRC_TABLE[i] = crc & 0xFFFF;
+		}
+		for (int n=1; n<CRC_SLICES; n++) {
+			for (int i=0; i<256; i++) {
+				final int prev = CRC_TABLE[(n - 1)*256 + i];
+				CRC_TABLE[n*256 + i] = ((prev << 8) & 0xFFFF) ^ CRC_TABLE[prev >>> 8];
+			}
+		}
+		CRC_INIT_TERM = CRC_TABLE[(CRC_SLICES - 1)*256 + (CRC_INIT >>> 8)] ^ 
+				        CRC_TABLE[(CRC_SLICES - 2)*256 + (CRC_INIT & 0xFF)];
+	}
+	
+	public static final byte SLIP_END = (byte) 0xC0;
+	public static final byte SLIP_ESC = (byte) 0xDB;
+	public static final byte SLIP_ESC_END = (byte) 0xDC;
+	public static final byte SLIP_ESC_ESC = (byte) 0xDD;
+	
+	// Byte stream form, computed only when the packet is written out
+	private ByteArrayOutputStream mByteStreamForm = null;
+	
+	// Frame data, header is followed by payload
+	private byte[] mFrame;
+	private int mOffset;
+	
+	/**
+	 * Create an empty flyweight packet. Call {@code wrap} to 
+	 * point it at frame data before use. 
+	 */
+	public KillalotPacket() {
+		mFrame = null;
+		mOffset = 0;
+	}
+	
+	/**
+	 * @param header Header data of this datagram.
+	 * @param payload Data if this datagram.
+	 */
+	public KillalotPacket(byte[] header, byte[] payload) {
+		mFrame = new byte[getDecodedSize()];
+		mOffset = 0;
+		System.arraycopy(header, 0, mFrame, 0, Math.min(header.length, HEADER_LEN));
+		System.arraycopy(payload, 0, mFrame, HEADER_LEN, Math.min(payload.length, PAYLOAD_LEN));
+	}
+	
+	/**
+	 * Create a datagram from raw byte stream,
+	 * 
+	 * @param byteStream Stream without pre-inserted escape characters.
+	 */
+	public KillalotPacket(byte[] byteStream) {
+		mFrame = Arrays.copyOf(byteStream, getDecodedSize());
+		mOffset = 0;
+	}
+	
+	/**
+	 * <p>
+	 * Point this packet at unescaped frame data held in a shared 
+	 * buffer. No data is copied, so the packet is only valid until
+	 * the buffer is overwritten.
+	 * </p>
+	 * 
+	 * @param frame  Buffer holding the frame.
+	 * @param offset Index of first header byte in {@code frame}.
+	 * @return This packet.
+	 */
+	public KillalotPacket wrap(byte[] frame, int offset) {
+		mFrame = frame;
+		mOffset = offset;
+		mByteStreamForm = null;
+		return this;
+	}
+	
+	/**
+	 * @return Frame type, the first header byte.
+	 */
+	public byte getType() {
+		return mFrame[mOffset];
+	}
+	
+	/**
+	 * @param i Index of header byte.
+	 * @return Header byte at index {@code i}.
+	 */
+	public byte getHeaderByte(int i) {
+		return mFrame[mOffset + i];
+	}
+	
+	/**
+	 * @return 24 bit unsigned frame index held in last three header bytes.
+	 */
+	public int getIndex() {
+		return ((mFrame[mOffset + 1] & 0xFF) << 16) | 
+			   ((mFrame[mOffset + 2] & 0xFF) << 8) | 
+			   (mFrame[mOffset + 3] & 0xFF);
+	}
+	
+	/**
+	 * @param i Index of payload byte.
+	 * @return Payload byte at index {@code i}.
+	 */
+	public byte getPayloadByte(int i) {
+		return mFrame[mOffset + HEADER_LEN + i];
+	}
+	
+	/**
+	 * @return Buffer holding the frame of this packet.
+	 */
+	public byte[] getFrameBuffer() {
+		return mFrame;
+	}
+	
+	/**
+	 * @return Index of first payload byte in {@link #getFrameBuffer()}.
+	 */
+	public int getPayloadOffset() {
+		return mOffset + HEADER_LEN;
+	}
+	
+	/**
+	 * @return Copy of the header field of this frame.
+	 */
+	public byte[] getHeader() {
+		return Arrays.copyOfRange(mFrame, mOffset, mOffset + HEADER_LEN);
+	}
+	
+	/**
+	 * @return Copy of the data of this frame. 
+	 */
+	public byte[] getPayload() {
+		return Arrays.copyOfRange(mFrame, mOffset + HEADER_LEN, mOffset + HEADER_LEN + PAYLOAD_LEN);
+	}
+	
+	@Override
+	public ByteArrayOutputStream serialize() {
+		if (mByteStreamForm == null) {
+			mByteStreamForm = computeByteStreamForm();
+		}
+		return mByteStreamForm;
+	}
+	
+	@Override 
+	public int getSize() {
+		return getEncodedSize(mFrame, mOffset);
+	}
+	
+	/**
+	 * @param frame  Buffer holding an unescaped frame.
+	 * @param offset Index of first header byte in {@code frame}.
+	 * @return Size of the frame after SLIP encoding.
+	 */
+	public static int getEncodedSize(byte[] frame, int offset) {
+		return getEncodedSize(frame, offset, false);
+	}
+	
+	/**
+	 * @param frame  Buffer holding an unescaped frame.
+	 * @param offset Index of first header byte in {@code frame}.
+	 * @param crc    Flag indicating whether the frame carries a CRC.
+	 * @return Size of the frame after SLIP encoding.
+	 */
+	public static int getEncodedSize(byte[] frame, int offset, boolean crc) {
+		// begin and end characters
+		int len = 2;
+		for (int i=offset; i<offset+getDecodedSize(); i++) {
+			final byte b = frame[i];
+			len += (b == SLIP_END || b == SLIP_ESC) ? 2 : 1;
+		}
+		if (crc) {
+			final int value = frameCrc(frame, offset);
+			len += escapedSize((byte) (value >>> 8)) + escapedSize((byte) value);
+		}
+		return len;
+	}
+	
+	/**
+	 * @param buffer Buffer holding the bytes.
+	 * @param offset Index of first byte.
+	 * @param length Number of bytes.
+	 * @return CRC-16/CCITT-FALSE of the bytes.
+	 */
+	public static int crc16(byte[] buffer, int offset, int length) {
+		final int end = offset + length;
+		int crc = CRC_INIT;
+		int i = offset;
+		for (; i+4<=end; i+=4) {
+			crc = CRC_TABLE[3*256 + (((crc >>> 8) ^ buffer[i]) & 0xFF)] ^ 
+				  CRC_TABLE[2*256 + ((crc ^ buffer[i + 1]) & 0xFF)] ^ 
+				  CRC_TABLE[256 + (buffer[i + 2] & 0xFF)] ^ 
+				  CRC_TABLE[buffer[i + 3] & 0xFF];
+		}
+		for (; i<end; i++) {
+			crc = ((crc << 8) & 0xFFFF) ^ CRC_TABLE[((crc >>> 8) ^ buffer[i]) & 0xFF];
+		}
+		return crc;
+	}
+	
+	/**
+	 * @param frame  Buffer holding an unescaped frame.
+	 * @param offset Index of first header byte in {@code frame}.
+	 * @return CRC-16/CCITT-FALSE of the header and payload, the same as {@link #crc16(byte[], int, int)}.
+	 */
+	private static int frameCrc(byte[] frame, int offset) {
+		int crc = CRC_INIT_TERM;
+		for (int n=0; n<CRC_SLICES; n++) {
+			crc ^= CRC_TABLE[(CRC_SLICES - 1 - n)*256 + (frame[offset + n] & 0xFF)];
+		}
+		return crc;
+	}
+	
+	/**
+	 * @param frame  Buffer holding an unescaped frame followed by its CRC.
+	 * @param offset Index of first header byte in {@code frame}.
+	 * @return Flag indicating whether the CRC matches the header and payload.
+	 */
+	public static boolean checkCrc(byte[] frame, int offset) {
+		final int at = offset + getDecodedSize();
+		final int sent = ((frame[at] & 0xFF) << 8) | (frame[at + 1] & 0xFF);
+		return frameCrc(frame, offset) == sent;
+	}
+	
+	/**
+	 * <p>
+	 * SLIP encode an unescaped frame straight into a buffer.
+	 * Nothing is written if the encoded frame does not fit.
+	 * </p>
+	 * 
+	 * @param frame  Buffer holding an unescaped frame.
+	 * @param offset Index of first header byte in {@code frame}.
+	 * @param dst    Buffer to write to, from its current position.
+	 * @return Flag indicating whether the frame was written.
+	 */
+	public static boolean encode(byte[] frame, int offset, ByteBuffer dst) {
+		return encode(frame, offset, dst, false);
+	}
+	
+	/**
+	 * SLIP encode an unescaped frame straight into a buffer, 
+	 * optionally followed by its CRC.
+	 * 
+	 * @param frame  Buffer holding an unescaped frame.
+	 * @param offset Index of first header byte in {@code frame}.
+	 * @param dst    Buffer to write to, from its current position.
+	 * @param crc    Flag indicating whether to append the CRC.
+	 * @return Flag indicating whether the frame was written.
+	 */
+	public static boolean encode(byte[] frame, int offset, ByteBuffer dst, boolean crc) {
+		final int value = crc ? frameCrc(frame, offset) : 0;
+		if (dst.remaining() < WORST_CASE_CRC_PACKET_LEN) {
+			// only measure the frame when it may not fit
+			final int len = getEncodedSize(frame, offset) + 
+					(crc ? escapedSize((byte) (value >>> 8)) + escapedSize((byte) value) : 0);
+			if (len > dst.remaining()) {
+				return false;
+			}
+		}
+		
+		if (dst.hasArray()) {
+			final byte[] out = dst.array();
+			final int start = dst.arrayOffset() + dst.position();
+			int pos = start;
+			out[pos++] = SLIP_END;
+			for (int i=offset; i<offset+getDecodedSize(); i++) {
+				pos = putEscaped(out, pos, frame[i]);
+			}
+			if (crc) {
+				pos = putEscaped(out, pos, (byte) (value >>> 8));
+				pos = putEscaped(out, pos, (byte) value);
+			}
+			out[pos++] = SLIP_END;
+			dst.position(dst.position() + pos - start);
+		} else {
+			dst.put(SLIP_END);
+			for (int i=offset; i<offset+getDecodedSize(); i++) {
+				putEscaped(dst, frame[i]);
+			}
+			if (crc) {
+				putEscaped(dst, (byte) (value >>> 8));
+				putEscaped(dst, (byte) value);
+			}
+			dst.put(SLIP_END);
+		}
+		return true;
+	}
+	
+	/**
+	 * @return Size of packet after decoding.
+	 */
+	public static int getDecodedSize() {
+		return HEADER_LEN + PAYLOAD_LEN;
+	}
+	
+	@Override
+	public String stringForm() {
+		byte[] byteArray = serialize().toByteArray();
+		
+		StringBuilder strBuilder = new StringBuilder();
+		for (int i=0; i<byteArray.length; i++) {
+			strBuilder.append(String.format("%d ", byteArray[i]));
+		}
+		return strBuilder.toString();
+	}
+	
+	private static int escapedSize(byte b) {
+		return (b == SLIP_END || b == SLIP_ESC) ? 2 : 1;
+	}
+	
+	private static int putEscaped(byte[] out, int pos, byte b) {
+		if (b == SLIP_END) {
+			out[pos++] = SLIP_ESC;
+			out[pos++] = SLIP_ESC_END;
+		} else if (b == SLIP_ESC) {
+			out[pos++] = SLIP_ESC;
+			out[pos++] = SLIP_ESC_ESC;
+		} else {
+			out[pos++] = b;
+		}
+		return pos;
+	}
+	
+	private static void putEscaped(ByteBuffer dst, byte b) {
+		if (b == SLIP_END) {
+			dst.put(SLIP_ESC).put(SLIP_ESC_END);
+		} else if (b == SLIP_ESC) {
+			dst.put(SLIP_ESC).put(SLIP_ESC_ESC);
+		} else {
+			dst.put(b);
+		}
+	}
+	
+	private ByteArrayOutputStream computeByteStreamForm() { 
+		final ByteArrayOutputStream out = new ByteArrayOutputStream(WORST_CASE_PACKET_LEN);
+		
+		// write begin character
+		out.write(SLIP_END);
+		
+		// write header and payload
+		for (int i=0; i<getDecodedSize(); i++) {
+			final byte b = mFrame[mOffset + i];
+			switch(b) {
+			case(SLIP_END):
+				out.write(SLIP_ESC);
+				out.write(SLIP_ESC_END);
+				break;
+			case(SLIP_ESC):
+				out.write(SLIP_ESC);
+				out.write(SLIP_ESC_ESC);
+				break;
+			default:
+				out.write(b);
+			}
+		}
+		
+		// write end character
+		out.write(SLIP_END);
+		
+		return out;
+	}
+}
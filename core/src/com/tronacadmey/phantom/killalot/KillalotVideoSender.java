@@ -0,0 +1,181 @@
+package com.tronacadmey.phantom.killalot;
+
+import java.util.Arrays;
+
+import com.tronacademy.phantom.messaging.OutgoingTransaction;
+import com.tronacademy.phantom.messaging.PBitmap;
+
+/**
+ * <p>
+ * Stateful alternative to {@code KillalotAssembler.serializeAsBitmap}
+ * for a stream of images from one camera. It keeps the last image
+ * sent, and only sends the 8x8 pixel tiles which changed since then.
+ * </p>
+ *
+ * <p>
+ * Tile frames have {@code K_IMG_ENC_TILES} in the IMAGEHEAD encoding
+ * byte and the number of data frames in its reserved bytes. The data
+ * is a bitmap of one bit per tile, row major and most significant bit
+ * first, followed by the pixel stream of each changed tile, a row of
+ * the tile at a time. Tiles at the right and bottom edges are clipped
+ * to the image. The receiver patches its last image with the tiles.
+ * </p>
+ *
+ * <p>
+ * Every {@code keyframeInterval} images a whole image is sent instead,
+ * so a receiver recovers from lost frames. A change of size or pixel
+ * encoding also causes a whole image to be sent.
+ * </p>
+ */
+public class KillalotVideoSender {
+
+	private static final int TILE = KillalotAssembler.IMAGE_TILE_SIZE;
+	
+	private final KillalotAssembler mAssembler = new KillalotAssembler();
+	private final int mKeyframeInterval;
+	private int mFramesToKeyframe = 0;
+	
+	// pixel stream of the last image sent, null until the first keyframe
+	private byte[] mLastSent = null;
+	private byte[] mCurrent = null;
+	private int mWidth;
+	private int mHeight;
+	private PBitmap.Encoding mEncoding;
+	
+	// statistics
+	private long mTilesSent = 0;
+	private long mTilesSuppressed = 0;
+	
+	/**
+	 * @param keyframeInterval    Number of images between whole images, at least 1.
+	 * @param keyframeCompression Compression of whole images, one of {@code K_IMG_ENC_RAW},
+	 *                            {@code K_IMG_ENC_RLE} or {@code K_IMG_ENC_LZ}.
+	 * @throws IllegalArgumentException if the compression is not known.
+	 */
+	public KillalotVideoSender(int keyframeInterval, byte keyframeCompression)
+			throws IllegalArgumentException {
+		mKeyframeInterval = Math.max(keyframeInterval, 1);
+		mAssembler.setImageCompression(keyframeCompression);
+	}
+	
+	/**
+	 * Make the next image a whole image.
+	 */
+	public void forceKeyframe() {
+		mFramesToKeyframe = 0;
+	}
+	
+	/**
+	 * @param crc Flag indicating whether frames are written with a CRC, 
+	 *            for links whose decoder checks it.
+	 */
+	public void setFrameCrc(boolean crc) {
+		mAssembler.setFrameCrc(crc);
+	}
+	
+	/**
+	 * Assemble the next image of the stream.
+	 *
+	 * @param name String name of transaction process to generate.
+	 * @param bmp  Image to serialize.
+	 * @return Transaction handler for the image, null if assembly failed.
+	 */
+	public OutgoingTransaction serializeAsFrame(String name, PBitmap bmp) {
+		final int pixelBytes = PBitmap.getBytesPerPixel(bmp.getEncoding());
+		
+		// new stream geometry, receivers need a whole image
+		if (mLastSent == null || bmp.getWidth() != mWidth || bmp.getHeight() != mHeight ||
+				bmp.getEncoding() != mEncoding || bmp.getSizeInBytes() != mLastSent.length) {
+			mLastSent = new byte[bmp.getSizeInBytes()];
+			mCurrent = new byte[bmp.getSizeInBytes()];
+			mWidth = bmp.getWidth();
+			mHeight = bmp.getHeight();
+			mEncoding = bmp.getEncoding();
+			mFramesToKeyframe = 0;
+		}
+		
+		final boolean keyframe = (mFramesToKeyframe <= 0);
+		mFramesToKeyframe = keyframe ? mKeyframeInterval - 1 : mFramesToKeyframe - 1;
+		
+		if (keyframe) {
+			KillalotImageCodec.toBytes(bmp.asByteBuffer(), mLastSent);
+			return mAssembler.serializeAsBitmap(name, bmp);
+		}
+		
+		KillalotImageCodec.toBytes(bmp.asByteBuffer(), mCurrent);
+		
+		final int tilesX = (mWidth + TILE - 1) / TILE;
+		final int tilesY = (mHeight + TILE - 1) / TILE;
+		final int rowBytes = mWidth * pixelBytes;
+		final int dirtyLen = (tilesX * tilesY + Byte.SIZE - 1) / Byte.SIZE;
+		
+		// worst case every tile changed
+		final byte[] packed = new byte[dirtyLen + mWidth * mHeight * pixelBytes];
+		int out = dirtyLen;
+		int changed = 0;
+		for (int ty=0; ty<tilesY; ty++) {
+			final int rows = Math.min(TILE, mHeight - ty*TILE);
+			for (int tx=0; tx<tilesX; tx++) {
+				final int start = ty*TILE*rowBytes + tx*TILE*pixelBytes;
+				final int len = Math.min(TILE, mWidth - tx*TILE) * pixelBytes;
+				if (!tileChanged(start, len, rows, rowBytes)) {
+					continue;
+				}
+				
+				final int tile = ty*tilesX + tx;
+				packed[tile / Byte.SIZE] |= (byte) (0x80 >>> (tile % Byte.SIZE));
+				for (int row=0; row<rows; row++) {
+					final int from = start + row*rowBytes;
+					System.arraycopy(mCurrent, from, packed, out, len);
+					System.arraycopy(mCurrent, from, mLastSent, from, len);
+					out += len;
+				}
+				changed++;
+			}
+		}
+		
+		mTilesSent += changed;
+		mTilesSuppressed += tilesX * tilesY - changed;
+		
+		// an unchanged image is sent as the meta data frame alone
+		final byte[] data = (changed > 0) ? Arrays.copyOf(packed, out) : new byte[0];
+		final int noOfFrames =
+				(int) Math.ceil((double) data.length / (double) KillalotPacket.PAYLOAD_LEN) + 1;
+		if (noOfFrames > KillalotAssembler.IMAGE_PACK_LIMIT) {
+			return null;
+		}
+		
+		final byte encoding = (mEncoding == PBitmap.Encoding.RGB565) ?
+				KillalotAssembler.K_IMG_ENC_RGB565 : KillalotAssembler.K_IMG_ENC_ARGB8888;
+		final OutgoingKillalotImageTransaction tiles = new OutgoingKillalotImageTransaction(name, 
+				mWidth, mHeight, (byte) (encoding | KillalotAssembler.K_IMG_ENC_TILES), data, noOfFrames, 2);
+		tiles.setFrameCrc(mAssembler.hasFrameCrc());
+		return tiles;
+	}
+	
+	/**
+	 * @return Number of tiles sent in tile frames so far.
+	 */
+	public long getTilesSent() {
+		return mTilesSent;
+	}
+	
+	/**
+	 * @return Number of unchanged tiles not sent so far.
+	 */
+	public long getTilesSuppressed() {
+		return mTilesSuppressed;
+	}
+	
+	private boolean tileChanged(int start, int len, int rows, int rowBytes) {
+		for (int row=0; row<rows; row++) {
+			final int from = start + row*rowBytes;
+			for (int i=from; i<from+len; i++) {
+				if (mCurrent[i] != mLastSent[i]) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+}
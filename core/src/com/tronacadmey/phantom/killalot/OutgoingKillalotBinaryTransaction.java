@@ -0,0 +1,91 @@
+package com.tronacadmey.phantom.killalot;
+
+/**
+ * <p>
+ * Outgoing binary transaction which packs each frame straight
+ * from the source array as it is transmitted. The first frame
+ * is the BINARYHEAD meta data frame.
+ * </p>
+ *
+ * <p>
+ * The meta data frame holds the number of data frames which
+ * follow it in the first 3 payload bytes, and the number of
+ * bytes of data in the next 4, so the receiver can drop the
+ * padding of the last frame.
+ * </p>
+ *
+ * <p>
+ * The source array is read in place, it must not be altered
+ * until the transaction completes.
+ * </p>
+ */
+public class OutgoingKillalotBinaryTransaction extends OutgoingKillalotTransaction {
+	
+	private final byte[] mData;
+	
+	// echoed by the receiver's acknowledgements, header 4th byte of the meta data frame
+	private byte mTransferId = 0;
+	
+	/**
+	 * @param name      String name of the transaction process.
+	 * @param data      Binary data to transmit.
+	 * @param numFrames Number of frames including the meta data frame.
+	 * @param priority  Priority of the transmission (lower is higher)
+	 */
+	public OutgoingKillalotBinaryTransaction(String name, byte[] data, int numFrames, int priority) {
+		super(name, numFrames, priority);
+		
+		mData = data;
+	}
+	
+	/**
+	 * Tag the meta data frame so acknowledgements of this data
+	 * can be told apart from those of earlier transfers. Must be
+	 * set before the first frame is sent.
+	 *
+	 * @param transferId Transfer identifier, only its lower 8 bits are sent.
+	 */
+	public void setTransferId(int transferId) {
+		mTransferId = (byte) transferId;
+	}
+	
+	@Override
+	protected void fillFrame(int frame, byte[] dst, int offset) {
+		final int payload = offset + KillalotPacket.HEADER_LEN;
+		
+		if (frame == 0) {
+			dst[offset] = KillalotAssembler.BINARYHEAD_INDICATOR;
+			dst[offset + 1] = 0;
+			dst[offset + 2] = 0;
+			dst[offset + 3] = mTransferId;
+			
+			final int dataFrames = (mData.length + KillalotPacket.PAYLOAD_LEN - 1) / KillalotPacket.PAYLOAD_LEN;
+			dst[payload] = (byte) ((dataFrames >>> 16) & 0xFF);
+			dst[payload + 1] = (byte) ((dataFrames >>> 8) & 0xFF);
+			dst[payload + 2] = (byte) (dataFrames & 0xFF);
+			dst[payload + 3] = (byte) ((mData.length >>> 24) & 0xFF);
+			dst[payload + 4] = (byte) ((mData.length >>> 16) & 0xFF);
+			dst[payload + 5] = (byte) ((mData.length >>> 8) & 0xFF);
+			dst[payload + 6] = (byte) (mData.length & 0xFF);
+			dst[payload + 7] = 0;
+			return;
+		}
+		
+		// binary data frames are indexed from zero after the header frame
+		final int index = frame - 1;
+		dst[offset] = KillalotAssembler.BINARY_INDICATOR;
+		dst[offset + 1] = (byte) ((index & 0x00FF0000) >>> 16);
+		dst[offset + 2] = (byte) ((index & 0x0000FF00) >>> 8);
+		dst[offset + 3] = (byte) (index & 0x000000FF);
+		
+		// zero pad past the end of the data
+		final int start = index * KillalotPacket.PAYLOAD_LEN;
+		final int len = Math.max(0, Math.min(KillalotPacket.PAYLOAD_LEN, mData.length - start));
+		if (len > 0) {
+			System.arraycopy(mData, start, dst, payload, len);
+		}
+		for (int i=payload+len; i<payload+KillalotPacket.PAYLOAD_LEN; i++) {
+			dst[i] = 0;
+		}
+	}
+}
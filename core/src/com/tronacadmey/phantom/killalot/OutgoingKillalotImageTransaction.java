@@ -0,0 +1,151 @@
+package com.tronacadmey.phantom.killalot;
+
+import java.nio.ByteBuffer;
+
+import com.tronacademy.phantom.messaging.PBitmap;
+
+/**
+ * <p>
+ * Outgoing image transaction which packs each frame straight 
+ * from the pixel data of the bitmap as it is transmitted. 
+ * The first frame is the IMAGEHEAD meta data frame.
+ * </p>
+ * 
+ * <p>
+ * The bitmap's pixel data is read in place, it must not be 
+ * altered until the transaction completes.
+ * </p>
+ * 
+ * <p>
+ * Compressed images instead pack their frames from the
+ * compressed pixel stream, and give the number of data
+ * frames in the reserved bytes of the meta data frame.
+ * </p>
+ */
+public class OutgoingKillalotImageTransaction extends OutgoingKillalotTransaction {
+
+	// pixel stream or compressed pixel stream
+	private final ByteBuffer mData;
+	private final boolean mCompressed;
+	private final int mWidth;
+	private final int mHeight;
+	private final byte mEncoding;
+	
+	// echoed by the receiver's acknowledgements, header 4th byte of the meta data frame
+	private byte mTransferId = 0;
+	
+	/**
+	 * @param name      String name of the transaction process.
+	 * @param bmp       Image to transmit.
+	 * @param encoding  Killalot image encoding byte of {@code bmp}.
+	 * @param numFrames Number of frames including the meta data frame.
+	 * @param priority  Priority of the transmission (lower is higher)
+	 */
+	public OutgoingKillalotImageTransaction(String name, PBitmap bmp, byte encoding, 
+			int numFrames, int priority) {
+		super(name, numFrames, priority);
+		
+		mData = bmp.asByteBuffer();
+		mCompressed = false;
+		mWidth = bmp.getWidth();
+		mHeight = bmp.getHeight();
+		mEncoding = encoding;
+	}
+	
+	/**
+	 * @param name      String name of the transaction process.
+	 * @param width     Width of image in pixels.
+	 * @param height    Height of image in pixels.
+	 * @param encoding  Killalot image encoding byte, including the compression.
+	 * @param packed    Compressed pixel stream.
+	 * @param numFrames Number of frames including the meta data frame.
+	 * @param priority  Priority of the transmission (lower is higher)
+	 */
+	public OutgoingKillalotImageTransaction(String name, int width, int height, byte encoding, 
+			byte[] packed, int numFrames, int priority) {
+		super(name, numFrames, priority);
+		
+		mData = ByteBuffer.wrap(packed);
+		mCompressed = true;
+		mWidth = width;
+		mHeight = height;
+		mEncoding = encoding;
+	}
+	
+	/**
+	 * Build a transaction which sends the data frames asked for
+	 * by a RESEND request again. The meta data frame is not sent.
+	 * 
+	 * @param name String name of the transaction process.
+	 * @param code Code of the RESEND request.
+	 * @return Transaction of the data frames asked for.
+	 */
+	public OutgoingKillalotTransaction serializeResend(String name, int code) {
+		// data frames follow the meta data frame
+		return resendFrames(name, KillalotAssembler.getResendIndex(code) + 1, 
+				KillalotAssembler.getResendCount(code));
+	}
+	
+	/**
+	 * Tag the meta data frame so acknowledgements of this image 
+	 * can be told apart from those of earlier images. Must be 
+	 * set before the first frame is sent.
+	 * 
+	 * @param transferId Transfer identifier, only its lower 8 bits are sent.
+	 */
+	public void setTransferId(int transferId) {
+		mTransferId = (byte) transferId;
+	}
+	
+	@Override
+	protected void fillFrame(int frame, byte[] dst, int offset) {
+		final int payload = offset + KillalotPacket.HEADER_LEN;
+		
+		if (frame == 0) {
+			// images begin with a header frame
+			dst[offset] = KillalotAssembler.IMAGEHEAD_INDICATOR;
+			dst[offset + 1] = 0;
+			dst[offset + 2] = 0;
+			dst[offset + 3] = mTransferId;
+			
+			// reserved for uncompressed images, otherwise number of data frames
+			final int dataFrames = mCompressed ? 
+					(mData.capacity() + KillalotPacket.PAYLOAD_LEN - 1) / KillalotPacket.PAYLOAD_LEN : 0;
+			dst[payload] = (byte) ((dataFrames >>> 16) & 0xFF);
+			dst[payload + 1] = (byte) ((dataFrames >>> 8) & 0xFF);
+			dst[payload + 2] = (byte) (dataFrames & 0xFF);
+			dst[payload + 3] = (byte) ((mWidth & 0xFF00) >>> 8);  // 16 bit for image width
+			dst[payload + 4] = (byte) (mWidth & 0x00FF);
+			dst[payload + 5] = (byte) ((mHeight & 0xFF00) >>> 8); // 16 bit for image height
+			dst[payload + 6] = (byte) (mHeight & 0x00FF);
+			dst[payload + 7] = mEncoding;
+			return;
+		}
+		
+		// image data frames are indexed from zero after the header frame
+		final int index = frame - 1;
+		
+		// HEADER
+		// frame type
+		dst[offset] = KillalotAssembler.IMAGE_INDICATOR;
+		// frame index
+		dst[offset + 1] = (byte) ((index >>> 16) & 0xFF);
+		dst[offset + 2] = (byte) ((index >>> 8) & 0xFF);
+		dst[offset + 3] = (byte) (index & 0xFF);
+		
+		// PAYLOAD
+		// zero padded past the end of the data
+		final int start = index * KillalotPacket.PAYLOAD_LEN;
+		final int len = Math.max(0, Math.min(KillalotPacket.PAYLOAD_LEN, mData.capacity() - start));
+		if (mData.hasArray()) {
+			System.arraycopy(mData.array(), mData.arrayOffset() + start, dst, payload, len);
+		} else {
+			for (int i=0; i<len; i++) {
+				dst[payload + i] = mData.get(start + i);
+			}
+		}
+		for (int i=payload+len; i<payload+KillalotPacket.PAYLOAD_LEN; i++) {
+			dst[i] = 0;
+		}
+	}
+}
@@ -0,0 +1,164 @@
+package com.tronacadmey.phantom.killalot;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.tronacademy.phantom.messaging.OutgoingTransaction;
+
+/**
+ * <p>
+ * Outgoing transaction holding its frames unescaped and
+ * back to back in a single array. Frames are SLIP encoded
+ * only as they are written out.
+ * </p>
+ * 
+ * <p>
+ * Subclasses may instead produce each frame on demand by 
+ * overriding {@link #fillFrame(int, byte[], int)}, so only 
+ * one frame is held in memory at a time.
+ * </p>
+ */
+public class OutgoingKillalotTransaction extends OutgoingTransaction {
+
+	private final byte[] mFrames;
+	private final int mNumFrames;
+	private int mNextFrame = 0;
+	private boolean mFrameCrc = false;
+	
+	// frame being encoded
+	private final byte[] mScratch = new byte[KillalotPacket.getDecodedSize()];
+	
+	/**
+	 * @param name      String name of the transaction process.
+	 * @param frames    Unescaped frames placed back to back.
+	 * @param numFrames Number of frames in {@code frames}.
+	 * @param priority  Priority of the transmission (lower is higher)
+	 */
+	public OutgoingKillalotTransaction(String name, byte[] frames, int numFrames, int priority) {
+		super(name, numFrames, priority);
+		
+		mFrames = frames;
+		mNumFrames = numFrames;
+	}
+	
+	/**
+	 * For subclasses which produce their frames on demand.
+	 * 
+	 * @param name      String name of the transaction process.
+	 * @param numFrames Number of frames in the transaction.
+	 * @param priority  Priority of the transmission (lower is higher)
+	 */
+	protected OutgoingKillalotTransaction(String name, int numFrames, int priority) {
+		this(name, null, numFrames, priority);
+	}
+	
+	/**
+	 * @param crc Flag indicating whether frames are written with a CRC, 
+	 *            for links whose decoder checks it.
+	 */
+	public void setFrameCrc(boolean crc) {
+		mFrameCrc = crc;
+	}
+	
+	/**
+	 * @return Flag indicating whether frames are written with a CRC.
+	 */
+	public boolean hasFrameCrc() {
+		return mFrameCrc;
+	}
+	
+	/**
+	 * Write the unescaped form of a frame into a buffer. 
+	 * Must give the same result every time it is called
+	 * with the same frame number.
+	 * 
+	 * @param frame  Index of the frame in this transaction.
+	 * @param dst    Buffer to write the frame to.
+	 * @param offset Index in {@code dst} of the first header byte.
+	 */
+	protected void fillFrame(int frame, byte[] dst, int offset) {
+		System.arraycopy(mFrames, frame * KillalotPacket.getDecodedSize(), 
+				         dst, offset, KillalotPacket.getDecodedSize());
+	}
+	
+	/**
+	 * Build a transaction which sends some frames of this one 
+	 * again. Frames are produced the same way as the first 
+	 * time, so this transaction may already be complete.
+	 * 
+	 * @param name       String name of the transaction process.
+	 * @param firstFrame Index of first frame to send again.
+	 * @param count      Number of frames to send again, cut short at the last frame.
+	 * @return Transaction of the frames, with the same priority as this one.
+	 */
+	public OutgoingKillalotTransaction resendFrames(String name, int firstFrame, int count) {
+		final int first = Math.max(firstFrame, 0);
+		final int numFrames = Math.max(0, Math.min(count, mNumFrames - first));
+		
+		final byte[] frames = new byte[numFrames * KillalotPacket.getDecodedSize()];
+		for (int i=0; i<numFrames; i++) {
+			fillFrame(first + i, frames, frameOffset(i));
+		}
+		final OutgoingKillalotTransaction resend = 
+				new OutgoingKillalotTransaction(name, frames, numFrames, getPriority());
+		resend.setFrameCrc(mFrameCrc);
+		return resend;
+	}
+	
+	@Override
+	public int getNumPackets() {
+		return mNumFrames - mNextFrame;
+	}
+	
+	@Override
+	public InputStream getNext() {
+		if (mNextFrame >= mNumFrames) {
+			return null;
+		}
+		
+		final ByteBuffer out = ByteBuffer.allocate(KillalotPacket.WORST_CASE_CRC_PACKET_LEN);
+		fillFrame(mNextFrame++, mScratch, 0);
+		KillalotPacket.encode(mScratch, 0, out, mFrameCrc);
+		return new ByteArrayInputStream(out.array(), 0, out.position());
+	}
+	
+	@Override
+	public boolean encodeNextTo(ByteBuffer dst) {
+		if (mNextFrame >= mNumFrames) {
+			return false;
+		}
+		
+		fillFrame(mNextFrame, mScratch, 0);
+		if (!KillalotPacket.encode(mScratch, 0, dst, mFrameCrc)) {
+			return false;
+		}
+		mNextFrame++;
+		return true;
+	}
+	
+	@Override
+	public List<ByteArrayOutputStream> showContents() {
+		final List<ByteArrayOutputStream> ret = new ArrayList<ByteArrayOutputStream>(getNumPackets());
+		final ByteBuffer encoded = ByteBuffer.allocate(KillalotPacket.WORST_CASE_CRC_PACKET_LEN);
+		for (int i=mNextFrame; i<mNumFrames; i++) {
+			// subclasses may produce frames on demand, so mFrames is not always there
+			final byte[] frame = new byte[KillalotPacket.getDecodedSize()];
+			fillFrame(i, frame, 0);
+			
+			encoded.clear();
+			KillalotPacket.encode(frame, 0, encoded, mFrameCrc);
+			final ByteArrayOutputStream out = new ByteArrayOutputStream(encoded.position());
+			out.write(encoded.array(), 0, encoded.position());
+			ret.add(out);
+		}
+		return ret;
+	}
+	
+	private static int frameOffset(int frame) {
+		return frame * KillalotPacket.getDecodedSize();
+	}
+}
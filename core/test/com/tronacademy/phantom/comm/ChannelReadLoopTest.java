@@ -0,0 +1,161 @@
+package com.tronacademy.phantom.comm;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Pipe;
+import java.nio.channels.Selector;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.tronacademy.phantom.messaging.PBitmap;
+import com.tronacademy.phantom.messaging.ProtocolDecoder.ErrorType;
+import com.tronacademy.phantom.messaging.ProtocolDecoder.ProtocolDecodeListener;
+import com.tronacademy.phantom.messaging.ProtocolDecoder.RequestType;
+import com.tronacademy.phantom.messaging.TransactionError;
+import com.tronacadmey.phantom.killalot.KillalotAssembler;
+import com.tronacadmey.phantom.killalot.KillalotDecoder;
+
+/**
+ * Checks a {@code ChannelReadLoop} drops only the link which fails.
+ */
+public class ChannelReadLoopTest {
+
+	private static final long TIMEOUT_SECONDS = 5;
+	
+	private final KillalotAssembler mAssembler = new KillalotAssembler();
+	private ChannelReadLoop mLoop;
+	private Thread mLoopThread;
+	private final BlockingQueue<Exception> mDropped = new ArrayBlockingQueue<Exception>(4);
+	
+	private static class CommandListener implements ProtocolDecodeListener {
+		final BlockingQueue<String> commands = new ArrayBlockingQueue<String>(4);
+		final boolean mThrows;
+		
+		CommandListener(boolean throwing) {
+			mThrows = throwing;
+		}
+		
+		@Override
+		public void onRecvChannels(int startChan, byte[] values) {
+		}
+		
+		@Override
+		public void onRecvCommands(String command, TransactionError error) {
+			if (mThrows) {
+				throw new IllegalStateException("listener failed on " + command);
+			}
+			commands.add(command);
+		}
+		
+		@Override
+		public void onRecvBitmap(PBitmap bmp, TransactionError error) {
+		}
+		
+		@Override
+		public void onRequest(RequestType request, int code) {
+		}
+		
+		@Override
+		public void onError(ErrorType error, int code) {
+		}
+	}
+	
+	@Before
+	public void startLoop() throws IOException {
+		mLoop = new ChannelReadLoop();
+		mLoop.setOnLinkDroppedListener(new ChannelReadLoop.OnLinkDroppedListener() {
+			@Override
+			public void onLinkDropped(ChannelCommManager comm, Exception cause) {
+				mDropped.add(cause != null ? cause : new Exception("end of stream"));
+			}
+		});
+		mLoopThread = new Thread(mLoop, "read-loop");
+		mLoopThread.start();
+	}
+	
+	@After
+	public void stopLoop() throws InterruptedException {
+		mLoop.stop();
+		mLoopThread.join();
+	}
+	
+	private void send(Pipe rx, String command) throws IOException {
+		final ByteBuffer buffer = ByteBuffer.allocate(256);
+		mAssembler.serializeAsCommands("test", command).encodeTo(buffer);
+		buffer.flip();
+		while (buffer.hasRemaining()) {
+			rx.sink().write(buffer);
+		}
+	}
+	
+	private ChannelCommManager addLink(Pipe rx, CommandListener listener) throws IOException {
+		final ChannelCommManager comm = ChannelCommManager.overPipes(rx, Pipe.open());
+		final KillalotDecoder decoder = new KillalotDecoder();
+		decoder.setOnProtocolDecodeListener(listener);
+		mLoop.addLink(comm, decoder);
+		return comm;
+	}
+	
+	@Test
+	public void listenerExceptionDropsOnlyItsLink() throws Exception {
+		final Pipe badRx = Pipe.open();
+		final Pipe goodRx = Pipe.open();
+		final CommandListener bad = new CommandListener(true);
+		final CommandListener good = new CommandListener(false);
+		final ChannelCommManager badComm = addLink(badRx, bad);
+		addLink(goodRx, good);
+		
+		send(badRx, "boom");
+		final Exception cause = mDropped.poll(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+		assertTrue(String.valueOf(cause), cause instanceof IllegalStateException);
+		assertFalse(badComm.getReadChannel().isOpen());
+		
+		send(goodRx, "still here");
+		assertEquals("still here", good.commands.poll(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+		assertTrue(mLoopThread.isAlive());
+		assertEquals(1, mLoop.getNumLinks());
+	}
+	
+	@Test
+	public void endOfStreamDropsLink() throws Exception {
+		final Pipe rx = Pipe.open();
+		addLink(rx, new CommandListener(false));
+		rx.sink().close();
+		
+		final Exception cause = mDropped.poll(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+		assertEquals("end of stream", cause.getMessage());
+		assertEquals(0, mLoop.getNumLinks());
+	}
+	
+	@Test
+	public void inputStreamRefusedOnceRegistered() throws IOException {
+		final Pipe rx = Pipe.open();
+		final ChannelCommManager comm = ChannelCommManager.overPipes(rx, Pipe.open());
+		assertSame(comm.getInputStream(), comm.getInputStream());
+		
+		final Selector selector = Selector.open();
+		try {
+			comm.register(selector, null);
+			try {
+				comm.getInputStream();
+				fail("stream handed out for a non-blocking channel");
+			} catch (IllegalStateException e) {
+				// expected
+			}
+		} finally {
+			selector.close();
+			comm.close();
+		}
+	}
+}
@@ -0,0 +1,184 @@
+package com.tronacademy.phantom.comm;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Pipe;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Test;
+
+import com.tronacademy.phantom.messaging.PBitmap;
+import com.tronacademy.phantom.messaging.ProtocolDecoder.ErrorType;
+import com.tronacademy.phantom.messaging.ProtocolDecoder.ProtocolDecodeListener;
+import com.tronacademy.phantom.messaging.ProtocolDecoder.RequestType;
+import com.tronacademy.phantom.messaging.TransactionError;
+import com.tronacadmey.phantom.killalot.KillalotAssembler;
+import com.tronacadmey.phantom.killalot.KillalotDecoder;
+
+/**
+ * Checks a {@code LinkHub} rejects an empty pool, spreads links
+ * added at once over its workers and drops only the link which fails.
+ */
+public class LinkHubTest {
+	
+	private static final long TIMEOUT_SECONDS = 5;
+	
+	private final KillalotAssembler mAssembler = new KillalotAssembler();
+	private final BlockingQueue<Exception> mDropped = new ArrayBlockingQueue<Exception>(4);
+	private LinkHub mHub;
+	
+	private static class CommandListener implements ProtocolDecodeListener {
+		final BlockingQueue<String> commands = new ArrayBlockingQueue<String>(4);
+		final boolean mThrows;
+		
+		CommandListener(boolean throwing) {
+			mThrows = throwing;
+		}
+		
+		@Override
+		public void onRecvChannels(int startChan, byte[] values) {
+		}
+		
+		@Override
+		public void onRecvCommands(String command, TransactionError error) {
+			if (mThrows) {
+				throw new IllegalStateException("listener failed on " + command);
+			}
+			commands.add(command);
+		}
+		
+		@Override
+		public void onRecvBitmap(PBitmap bmp, TransactionError error) {
+		}
+		
+		@Override
+		public void onRequest(RequestType request, int code) {
+		}
+		
+		@Override
+		public void onError(ErrorType error, int code) {
+		}
+	}
+	
+	@After
+	public void shutdown() {
+		if (mHub != null) {
+			mHub.shutdown();
+		}
+	}
+	
+	private void listenForDrops() {
+		mHub.setOnLinkDroppedListener(new ChannelReadLoop.OnLinkDroppedListener() {
+			@Override
+			public void onLinkDropped(ChannelCommManager comm, Exception cause) {
+				mDropped.add(cause != null ? cause : new Exception("end of stream"));
+			}
+		});
+	}
+	
+	private void send(Pipe rx, String command) throws IOException {
+		final ByteBuffer buffer = ByteBuffer.allocate(256);
+		mAssembler.serializeAsCommands("test", command).encodeTo(buffer);
+		buffer.flip();
+		while (buffer.hasRemaining()) {
+			rx.sink().write(buffer);
+		}
+	}
+	
+	private ChannelCommManager addLink(Pipe rx, CommandListener listener) throws IOException {
+		final ChannelCommManager comm = ChannelCommManager.overPipes(rx, Pipe.open());
+		final KillalotDecoder decoder = new KillalotDecoder();
+		decoder.setOnProtocolDecodeListener(listener);
+		mHub.addLink(comm, decoder);
+		return comm;
+	}
+	
+	@Test
+	public void rejectsPoolWithoutWorkers() throws IOException {
+		for (int workers : new int[] {0, -1}) {
+			try {
+				new LinkHub(workers);
+				fail("pool of " + workers + " workers accepted");
+			} catch (IllegalArgumentException e) {
+				// expected
+			}
+		}
+	}
+	
+	private void checkDecoderFailureDropsOnlyItsLink() throws Exception {
+		listenForDrops();
+		final Pipe badRx = Pipe.open();
+		final Pipe goodRx = Pipe.open();
+		final CommandListener good = new CommandListener(false);
+		final ChannelCommManager badComm = addLink(badRx, new CommandListener(true));
+		addLink(goodRx, good);
+		
+		send(badRx, "boom");
+		final Exception cause = mDropped.poll(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+		assertTrue(String.valueOf(cause), cause instanceof IllegalStateException);
+		assertFalse(badComm.getReadChannel().isOpen());
+		
+		send(goodRx, "still here");
+		assertEquals("still here", good.commands.poll(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+		assertEquals(1, mHub.getNumLinks());
+	}
+	
+	@Test
+	public void pooledDecoderFailureDropsOnlyItsLink() throws Exception {
+		mHub = new LinkHub(2);
+		checkDecoderFailureDropsOnlyItsLink();
+	}
+	
+	@Test
+	public void threadPerLinkDecoderFailureDropsOnlyItsLink() throws Exception {
+		mHub = LinkHub.threadPerLink();
+		checkDecoderFailureDropsOnlyItsLink();
+	}
+	
+	@Test
+	public void linksAddedAtOnceAreSpreadEvenly() throws Exception {
+		final int workers = 4;
+		final int threads = 8;
+		final int linksPerThread = 3;
+		mHub = new LinkHub(workers);
+		
+		final CountDownLatch start = new CountDownLatch(1);
+		final CountDownLatch done = new CountDownLatch(threads);
+		final BlockingQueue<Exception> failures = new ArrayBlockingQueue<Exception>(threads);
+		for (int t=0; t<threads; t++) {
+			new Thread(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						start.await();
+						for (int i=0; i<linksPerThread; i++) {
+							addLink(Pipe.open(), new CommandListener(false));
+						}
+					} catch (Exception e) {
+						failures.add(e);
+					} finally {
+						done.countDown();
+					}
+				}
+			}).start();
+		}
+		start.countDown();
+		assertTrue(done.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+		assertTrue(String.valueOf(failures.peek()), failures.isEmpty());
+		
+		final int links = threads * linksPerThread;
+		assertEquals(links, mHub.getNumLinks());
+		for (int i=0; i<workers; i++) {
+			assertEquals(links / workers, mHub.getNumLinks(i));
+		}
+	}
+}
@@ -0,0 +1,151 @@
+package com.tronacademy.phantom.messaging;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+
+import com.tronacademy.phantom.messaging.AsyncDecodeDispatcher.Policy;
+import com.tronacademy.phantom.messaging.ProtocolAssembler.DataType;
+import com.tronacademy.phantom.messaging.ProtocolDecoder.ErrorType;
+import com.tronacademy.phantom.messaging.ProtocolDecoder.ProtocolDecodeListener;
+import com.tronacademy.phantom.messaging.ProtocolDecoder.RequestType;
+
+/**
+ * Checks the latest value channel path of {@code AsyncDecodeDispatcher},
+ * and that bitmaps it drops go back to their pool.
+ */
+public class AsyncDecodeDispatcherTest {
+
+	private static final int SLICES = 4;
+	private static final int MIN_WRITES = 1000000;
+	private static final int MIN_DELIVERIES = 10000;
+	private static final long MAX_MILLIS = 60000;
+	
+	private static class ChannelListener implements ProtocolDecodeListener {
+		final AtomicReference<String> failure = new AtomicReference<String>();
+		final AtomicInteger deliveries = new AtomicInteger();
+		final byte[] last = new byte[ChannelStateTable.CHANNELS];
+		
+		@Override
+		public void onRecvChannels(int startChan, byte[] values) {
+			// every slice is written with all of its values equal
+			for (byte value : values) {
+				if (value != values[0]) {
+					failure.set("slice at " + startChan + " torn: " + Arrays.toString(values));
+				}
+			}
+			System.arraycopy(values, 0, last, startChan, values.length);
+			deliveries.incrementAndGet();
+		}
+		
+		@Override
+		public void onRecvCommands(String command, TransactionError error) {
+		}
+		
+		@Override
+		public void onRecvBitmap(PBitmap bmp, TransactionError error) {
+		}
+		
+		@Override
+		public void onRequest(RequestType request, int code) {
+		}
+		
+		@Override
+		public void onError(ErrorType error, int code) {
+		}
+	}
+	
+	private static class BitmapListener implements ProtocolDecodeListener {
+		final List<PBitmap> bitmaps = new ArrayList<PBitmap>();
+		final List<String> errors = new ArrayList<String>();
+		
+		@Override
+		public void onRecvChannels(int startChan, byte[] values) {
+		}
+		
+		@Override
+		public void onRecvCommands(String command, TransactionError error) {
+		}
+		
+		@Override
+		public void onRecvBitmap(PBitmap bmp, TransactionError error) {
+			bitmaps.add(bmp);
+		}
+		
+		@Override
+		public void onRequest(RequestType request, int code) {
+		}
+		
+		@Override
+		public void onError(ErrorType error, int code) {
+			errors.add(error + " " + code);
+		}
+	}
+	
+	@Test
+	public void latestSlicesAreNeverTorn() throws InterruptedException {
+		final ChannelListener listener = new ChannelListener();
+		final AsyncDecodeDispatcher dispatcher = new AsyncDecodeDispatcher(listener);
+		final Thread consumer = new Thread(dispatcher, "consumer");
+		consumer.start();
+		
+		// decode thread overwrites slices faster than they are delivered
+		final byte[] values = new byte[ChannelStateTable.SLICE_LEN];
+		final long start = System.currentTimeMillis();
+		int writes = 0;
+		while ((writes < MIN_WRITES || listener.deliveries.get() < MIN_DELIVERIES) && 
+				System.currentTimeMillis() - start < MAX_MILLIS && listener.failure.get() == null) {
+			Arrays.fill(values, (byte) writes);
+			dispatcher.onRecvChannels((writes % SLICES) * ChannelStateTable.SLICE_LEN, values);
+			writes++;
+		}
+		
+		// final values of every slice arrive once the decode thread stops
+		for (int slice=0; slice<SLICES; slice++) {
+			Arrays.fill(values, (byte) (100 + slice));
+			dispatcher.onRecvChannels(slice * ChannelStateTable.SLICE_LEN, values);
+		}
+		dispatcher.stop();
+		consumer.join();
+		
+		assertNull(listener.failure.get(), listener.failure.get());
+		assertTrue("delivered " + listener.deliveries.get(), listener.deliveries.get() >= MIN_DELIVERIES);
+		for (int slice=0; slice<SLICES; slice++) {
+			assertEquals(100 + slice, listener.last[slice * ChannelStateTable.SLICE_LEN]);
+		}
+	}
+	
+	@Test
+	public void bitmapsDroppedUnderSignalAreRecycled() {
+		final BitmapListener listener = new BitmapListener();
+		final AsyncDecodeDispatcher dispatcher = new AsyncDecodeDispatcher(listener, 2);
+		dispatcher.setPolicy(DataType.IMAGE, Policy.SIGNAL);
+		final ImageBufferPool pool = new ImageBufferPool();
+		
+		// no consumer runs, so the third bitmap finds the ring full
+		final PBitmap[] posted = new PBitmap[3];
+		for (int i=0; i<posted.length; i++) {
+			posted[i] = PBitmap.fromPool(pool, PBitmap.Encoding.RGB565, 8, 8);
+			dispatcher.onRecvBitmap(posted[i], null);
+		}
+		assertEquals(3, pool.getAllocated());
+		assertEquals(0, pool.getReused());
+		
+		// the dropped bitmap's store is back in the pool
+		PBitmap.fromPool(pool, PBitmap.Encoding.RGB565, 8, 8);
+		assertEquals(3, pool.getAllocated());
+		assertEquals(1, pool.getReused());
+		
+		dispatcher.dispatchPending();
+		assertEquals(Arrays.asList(posted[0], posted[1]), listener.bitmaps);
+		assertEquals(Arrays.asList(ErrorType.NET_BUFFER_FULL + " 1"), listener.errors);
+	}
+}
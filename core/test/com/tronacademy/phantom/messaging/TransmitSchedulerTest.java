@@ -0,0 +1,149 @@
+package com.tronacademy.phantom.messaging;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.LinkedList;
+import java.util.Queue;
+
+import org.junit.Test;
+
+/**
+ * Checks the order in which a {@code TransmitScheduler} sends
+ * packets, using one byte packets which name their transaction.
+ */
+public class TransmitSchedulerTest {
+	
+	private final TransmitScheduler mScheduler = new TransmitScheduler();
+	
+	/**
+	 * @return Transaction of one byte packets each holding {@code tag}.
+	 */
+	private static OutgoingTransaction transaction(int priority, int packets, int tag) {
+		final Queue<ByteArrayOutputStream> stream = new LinkedList<ByteArrayOutputStream>();
+		for (int i=0; i<packets; i++) {
+			final ByteArrayOutputStream packet = new ByteArrayOutputStream(1);
+			packet.write(tag);
+			stream.add(packet);
+		}
+		return new OutgoingTransaction("tag" + tag, stream, priority);
+	}
+	
+	/**
+	 * @return Tags of the next {@code packets} packets scheduled.
+	 */
+	private byte[] next(int packets) {
+		final ByteBuffer dst = ByteBuffer.allocate(packets);
+		assertEquals(packets, mScheduler.encodeTo(dst));
+		return dst.array();
+	}
+	
+	private static byte[] tags(int... tags) {
+		final byte[] bytes = new byte[tags.length];
+		for (int i=0; i<tags.length; i++) {
+			bytes[i] = (byte) tags[i];
+		}
+		return bytes;
+	}
+	
+	@Test
+	public void channelPacketsAlwaysGoFirst() {
+		mScheduler.submit(transaction(1, 20, 1));
+		mScheduler.submit(transaction(2, 20, 2));
+		mScheduler.submit(transaction(3, 20, 3));
+		mScheduler.submit(transaction(0, 3, 0));
+		assertArrayEquals(tags(0, 0, 0, 1), next(4));
+		
+		// channel packets submitted mid transfer overtake everything queued
+		mScheduler.submit(transaction(0, 2, 9));
+		assertArrayEquals(tags(9, 9, 1), next(3));
+	}
+	
+	@Test
+	public void otherClassesShareByWeight() {
+		mScheduler.submit(transaction(1, 40, 1));
+		mScheduler.submit(transaction(2, 40, 2));
+		mScheduler.submit(transaction(3, 40, 3));
+		
+		// default weights 4, 2 and 1 repeat every 7 packets
+		final byte[] round = tags(1, 1, 1, 1, 2, 2, 3);
+		for (int i=0; i<5; i++) {
+			assertArrayEquals(round, next(round.length));
+		}
+	}
+	
+	@Test
+	public void emptyClassesGiveUpTheirShare() {
+		mScheduler.submit(transaction(2, 10, 2));
+		mScheduler.submit(transaction(3, 10, 3));
+		assertArrayEquals(tags(2, 2, 3, 2, 2, 3), next(6));
+	}
+	
+	@Test
+	public void transactionsInAClassTakeTurns() {
+		final TransmitScheduler scheduler = new TransmitScheduler(new int[] {1});
+		scheduler.submit(transaction(1, 3, 5));
+		scheduler.submit(transaction(1, 2, 6));
+		
+		final ByteBuffer dst = ByteBuffer.allocate(5);
+		assertEquals(5, scheduler.encodeTo(dst));
+		assertArrayEquals(tags(5, 6, 5, 6, 5), dst.array());
+	}
+	
+	@Test
+	public void customWeightsAreHonoured() {
+		final TransmitScheduler scheduler = new TransmitScheduler(new int[] {1, 3});
+		scheduler.submit(transaction(1, 10, 1));
+		scheduler.submit(transaction(2, 10, 2));
+		
+		final ByteBuffer dst = ByteBuffer.allocate(8);
+		assertEquals(8, scheduler.encodeTo(dst));
+		assertArrayEquals(tags(1, 2, 2, 2, 1, 2, 2, 2), dst.array());
+	}
+	
+	@Test
+	public void reportsQueueDepthPerClass() {
+		assertTrue(mScheduler.isIdle());
+		mScheduler.submit(transaction(0, 4, 0));
+		mScheduler.submit(transaction(2, 5, 2));
+		mScheduler.submit(transaction(2, 7, 2));
+		// priorities past the last weight join the last class
+		mScheduler.submit(transaction(3, 2, 3));
+		mScheduler.submit(transaction(7, 1, 7));
+		
+		assertFalse(mScheduler.isIdle());
+		assertEquals(4, mScheduler.getQueueDepth(0));
+		assertEquals(0, mScheduler.getQueueDepth(1));
+		assertEquals(12, mScheduler.getQueueDepth(2));
+		assertEquals(3, mScheduler.getQueueDepth(3));
+		assertEquals(3, mScheduler.getQueueDepth(7));
+		assertEquals(2, mScheduler.getPendingTransactions(2));
+		assertEquals(2, mScheduler.getPendingTransactions(3));
+		
+		// the channel packets and two image packets
+		next(6);
+		assertEquals(0, mScheduler.getQueueDepth(0));
+		assertEquals(0, mScheduler.getPendingTransactions(0));
+		assertEquals(10, mScheduler.getQueueDepth(2));
+		
+		next(13);
+		assertTrue(mScheduler.isIdle());
+		assertEquals(0, mScheduler.getQueueDepth(2));
+		assertEquals(0, mScheduler.getPendingTransactions(2));
+		
+		// nothing left to send
+		final ByteBuffer dst = ByteBuffer.allocate(4);
+		assertEquals(0, mScheduler.encodeTo(dst));
+	}
+	
+	@Test
+	public void completeTransactionsAreNotQueued() {
+		mScheduler.submit(transaction(2, 0, 2));
+		assertTrue(mScheduler.isIdle());
+		assertEquals(0, mScheduler.getPendingTransactions(2));
+	}
+}
@@ -0,0 +1,109 @@
+package com.tronacademy.phantom.mixer;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Checks {@code FixedPointMixer} against {@code MatrixMixer}.
+ */
+public class FixedPointMixerTest {
+
+	private static final int[] CHANNELS = {1, 2, 8, 16, 64, 128};
+	private static final int FRAMES = 1000;
+	
+	/**
+	 * Give both mixers the same random co-efficients, multiples of 1/256 
+	 * small enough that no output leaves the range of a channel.
+	 */
+	private static void randomMix(Random random, MatrixMixer matrix, FixedPointMixer fixed) {
+		final int n = matrix.getNumChans();
+		for (int i=0; i<n; i++) {
+			// sum of |co-efficients| in a row stays below 1
+			int budget = FixedPointMixer.ONE - 1;
+			for (int j=0; j<n; j++) {
+				final int magnitude = random.nextInt(Math.min(budget, 2*FixedPointMixer.ONE/n) + 1);
+				budget -= magnitude;
+				final double val = (random.nextBoolean() ? magnitude : -magnitude) / (double) FixedPointMixer.ONE;
+				matrix.setMixCoefficient(i, j, val);
+				fixed.setMixCoefficient(i, j, val);
+			}
+		}
+	}
+	
+	@Test
+	public void matchesMatrixMixerBitForBit() throws ChannelStreamSizeMismatchException {
+		final Random random = new Random(7);
+		for (int n : CHANNELS) {
+			final MatrixMixer matrix = new MatrixMixer(n, "matrix");
+			final FixedPointMixer fixed = new FixedPointMixer(n, "fixed");
+			randomMix(random, matrix, fixed);
+			
+			final byte[] in = new byte[n];
+			final byte[] out = new byte[n];
+			for (int f=0; f<FRAMES; f++) {
+				random.nextBytes(in);
+				fixed.mix(in, out);
+				assertArrayEquals("channels " + n, matrix.mix(in), out);
+			}
+		}
+	}
+	
+	@Test
+	public void batchMatchesMatrixMixerBitForBit() throws ChannelStreamSizeMismatchException {
+		final Random random = new Random(11);
+		for (int n : CHANNELS) {
+			final MatrixMixer matrix = new MatrixMixer(n, "matrix");
+			final FixedPointMixer fixed = new FixedPointMixer(n, "fixed");
+			randomMix(random, matrix, fixed);
+			
+			final byte[] in = new byte[FRAMES * n];
+			random.nextBytes(in);
+			final byte[] expected = new byte[in.length];
+			final byte[] actual = new byte[in.length];
+			matrix.mixBatch(in, expected);
+			fixed.mixBatch(in, actual);
+			assertArrayEquals("channels " + n, expected, actual);
+		}
+	}
+	
+	@Test
+	public void mixesInPlace() throws ChannelStreamSizeMismatchException {
+		final Random random = new Random(13);
+		final int n = 16;
+		final MatrixMixer matrix = new MatrixMixer(n, "matrix");
+		final FixedPointMixer fixed = new FixedPointMixer(n, "fixed");
+		randomMix(random, matrix, fixed);
+		
+		final byte[] buf = new byte[n];
+		for (int f=0; f<FRAMES; f++) {
+			random.nextBytes(buf);
+			final byte[] expected = matrix.mix(buf);
+			fixed.mix(buf, buf);
+			assertArrayEquals(expected, buf);
+		}
+		
+		final byte[] frames = new byte[FRAMES * n];
+		random.nextBytes(frames);
+		final byte[] expected = new byte[frames.length];
+		matrix.mixBatch(frames, expected);
+		fixed.mixBatch(frames, frames);
+		assertArrayEquals(expected, frames);
+	}
+	
+	@Test
+	public void saturatesInsteadOfWrapping() throws ChannelStreamSizeMismatchException {
+		final FixedPointMixer fixed = new FixedPointMixer(2, "fixed");
+		fixed.setMixCoefficient(0, 0, 0.0);
+		fixed.setMixCoefficient(1, 1, 0.0);
+		fixed.setMixCoefficient(0, 1, 2.0);
+		fixed.setMixCoefficient(1, 0, -2.0);
+		
+		final byte[] out = fixed.mix(new byte[] {100, 100});
+		assertEquals(Byte.MAX_VALUE, out[0]);
+		assertEquals(Byte.MIN_VALUE, out[1]);
+	}
+}
@@ -0,0 +1,162 @@
+package com.tronacademy.phantom.mixer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+
+/**
+ * <p>
+ * Stress test of staged mix updates. A writer republishes every 
+ * co-efficient of a {@code MatrixMixer} over and over while a reader 
+ * mixes, and the reader checks each mix used one whole matrix.
+ * </p>
+ *
+ * <p>
+ * Every published matrix holds a single co-efficient k/n in all
+ * positions, with k cycling through 1 to 3. Mixing a frame of all 
+ * 4 then gives 4k in every channel. A half-updated matrix gives 
+ * channels which differ, or values which are not a multiple of 4.
+ * </p>
+ */
+public class MatrixMixerPublishTest {
+
+	private static final int CHANNELS = 32;
+	// run for at least this long and this many mixes, however slow the machine
+	private static final long RUN_MILLIS = 1000;
+	private static final int MIN_MIXES = 20000;
+	private static final long MAX_MILLIS = 60000;
+	private static final int BATCH_FRAMES = 1024;
+	private static final int BATCH_INTERVAL = 256;
+	private static final byte INPUT = 4;
+	
+	private static boolean isWholeMix(byte[] out, int offset, int len) {
+		final byte first = out[offset];
+		if (first != 4 && first != 8 && first != 12) {
+			return false;
+		}
+		for (int i=offset; i<offset+len; i++) {
+			if (out[i] != first) {
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	@Test
+	public void readersNeverSeeHalfUpdatedMatrix() throws Exception {
+		final MatrixMixer mixer = new MatrixMixer(CHANNELS, "stress");
+		publishAll(mixer, 1);
+		
+		final AtomicReference<String> failure = new AtomicReference<String>();
+		final AtomicInteger generations = new AtomicInteger();
+		final AtomicInteger mixes = new AtomicInteger();
+		final AtomicInteger batches = new AtomicInteger();
+		final long start = System.currentTimeMillis();
+		final AtomicBoolean done = new AtomicBoolean();
+		final ExecutorService parts = Executors.newFixedThreadPool(4);
+		
+		final Thread writer = new Thread() {
+			@Override
+			public void run() {
+				int k = 1;
+				while (!done.get()) {
+					k = (k % 3) + 1;
+					publishAll(mixer, k);
+					generations.incrementAndGet();
+				}
+			}
+		};
+		
+		// one thread at a time may mix, like a control loop
+		final Thread reader = new Thread() {
+			@Override
+			public void run() {
+				final byte[] in = new byte[CHANNELS];
+				final byte[] out = new byte[CHANNELS];
+				Arrays.fill(in, INPUT);
+				final byte[] batchIn = new byte[BATCH_FRAMES * CHANNELS];
+				final byte[] batchOut = new byte[batchIn.length];
+				Arrays.fill(batchIn, INPUT);
+				
+				try {
+					while (failure.get() == null) {
+						final long elapsed = System.currentTimeMillis() - start;
+						if ((elapsed >= RUN_MILLIS && mixes.get() >= MIN_MIXES) || elapsed >= MAX_MILLIS) {
+							break;
+						}
+						
+						mixer.mix(in, out);
+						if (!isWholeMix(out, 0, CHANNELS)) {
+							failure.set("mix saw " + Arrays.toString(out));
+						}
+						
+						// a batch must also use one matrix for all of its frames
+						if (mixes.incrementAndGet() % BATCH_INTERVAL != 0) {
+							continue;
+						}
+						mixer.mixBatch(batchIn, batchOut);
+						if (!isWholeMix(batchOut, 0, batchOut.length)) {
+							failure.set("batch mixed frames with different matrices");
+						}
+						mixer.mixBatch(batchIn, batchOut, parts, 4);
+						if (!isWholeMix(batchOut, 0, batchOut.length)) {
+							failure.set("parallel batch mixed frames with different matrices");
+						}
+						batches.incrementAndGet();
+					}
+				} catch (Exception e) {
+					failure.set(e.toString());
+				} finally {
+					done.set(true);
+				}
+			}
+		};
+		
+		writer.start();
+		reader.start();
+		writer.join();
+		reader.join();
+		parts.shutdown();
+		
+		assertNull(failure.get(), failure.get());
+		assertTrue("writer published " + generations.get(), generations.get() > 10);
+		assertTrue("reader mixed " + mixes.get(), mixes.get() >= MIN_MIXES);
+		assertTrue("reader mixed batches " + batches.get(), batches.get() > 0);
+	}
+	
+	@Test
+	public void stagedEditsDoNotApplyUntilPublished() throws ChannelStreamSizeMismatchException {
+		final MatrixMixer mixer = new MatrixMixer(2, "staged");
+		mixer.stageMixCoefficient(0, 0, 2.0);
+		mixer.stageMixCoefficient(1, 1, 3.0);
+		assertEquals(5, mixer.mix(new byte[] {5, 5})[0]);
+		assertEquals(1.0, mixer.getMixCoefficientAt(0, 0), 0.0);
+		
+		mixer.publishMix();
+		final byte[] out = mixer.mix(new byte[] {5, 5});
+		assertEquals(10, out[0]);
+		assertEquals(15, out[1]);
+	}
+	
+	/**
+	 * Stage every co-efficient as k/n, then publish them together.
+	 */
+	private static void publishAll(MatrixMixer mixer, int k) {
+		final double val = (double) k / CHANNELS;
+		for (int i=0; i<CHANNELS; i++) {
+			for (int j=0; j<CHANNELS; j++) {
+				mixer.stageMixCoefficient(i, j, val);
+			}
+		}
+		mixer.publishMix();
+	}
+}
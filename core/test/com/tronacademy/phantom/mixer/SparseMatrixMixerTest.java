@@ -0,0 +1,100 @@
+package com.tronacademy.phantom.mixer;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Checks {@code SparseMatrixMixer} against {@code MatrixMixer}.
+ */
+public class SparseMatrixMixerTest {
+
+	private static final int[] CHANNELS = {1, 2, 8, 16, 64, 128};
+	private static final int FRAMES = 1000;
+	private static final int ROW_NON_ZEROS = 4;
+	
+	/**
+	 * Give both mixers the same few random co-efficients per row.
+	 */
+	private static void randomMix(Random random, MatrixMixer matrix, SparseMatrixMixer sparse) {
+		final int n = matrix.getNumChans();
+		for (int i=0; i<n; i++) {
+			matrix.setMixCoefficient(i, i, 0.0);
+			sparse.setMixCoefficient(i, i, 0.0);
+			for (int k=0; k<ROW_NON_ZEROS; k++) {
+				final int j = random.nextInt(n);
+				final double val = (random.nextInt(129) - 64) / 256.0;
+				matrix.setMixCoefficient(i, j, val);
+				sparse.setMixCoefficient(i, j, val);
+			}
+		}
+	}
+	
+	@Test
+	public void matchesMatrixMixer() throws ChannelStreamSizeMismatchException {
+		final Random random = new Random(17);
+		for (int n : CHANNELS) {
+			final MatrixMixer matrix = new MatrixMixer(n, "matrix");
+			final SparseMatrixMixer sparse = new SparseMatrixMixer(n, "sparse");
+			randomMix(random, matrix, sparse);
+			
+			final byte[] in = new byte[n];
+			final byte[] out = new byte[n];
+			for (int f=0; f<FRAMES; f++) {
+				random.nextBytes(in);
+				sparse.mix(in, out);
+				assertArrayEquals("channels " + n, matrix.mix(in), out);
+			}
+			
+			final byte[] frames = new byte[FRAMES * n];
+			random.nextBytes(frames);
+			final byte[] expected = new byte[frames.length];
+			final byte[] actual = new byte[frames.length];
+			matrix.mixBatch(frames, expected);
+			sparse.mixBatch(frames, actual);
+			assertArrayEquals("channels " + n, expected, actual);
+		}
+	}
+	
+	@Test
+	public void mixesInPlace() throws ChannelStreamSizeMismatchException {
+		final Random random = new Random(19);
+		final int n = 16;
+		final MatrixMixer matrix = new MatrixMixer(n, "matrix");
+		final SparseMatrixMixer sparse = new SparseMatrixMixer(n, "sparse");
+		randomMix(random, matrix, sparse);
+		
+		final byte[] buf = new byte[n];
+		for (int f=0; f<FRAMES; f++) {
+			random.nextBytes(buf);
+			final byte[] expected = matrix.mix(buf);
+			sparse.mix(buf, buf);
+			assertArrayEquals(expected, buf);
+		}
+		
+		final byte[] frames = new byte[FRAMES * n];
+		random.nextBytes(frames);
+		final byte[] expected = new byte[frames.length];
+		matrix.mixBatch(frames, expected);
+		sparse.mixBatch(frames, frames);
+		assertArrayEquals(expected, frames);
+	}
+	
+	@Test
+	public void storesOnlyNonZeros() {
+		final SparseMatrixMixer sparse = new SparseMatrixMixer(4, "sparse");
+		assertEquals(4, sparse.getNonZeroCount());
+		
+		sparse.setMixCoefficient(0, 3, 0.5);
+		assertEquals(5, sparse.getNonZeroCount());
+		assertEquals(0.5, sparse.getMixCoefficientAt(0, 3), 0.0);
+		
+		sparse.setMixCoefficient(0, 0, 0.0);
+		sparse.setMixCoefficient(1, 2, 0.0);
+		assertEquals(4, sparse.getNonZeroCount());
+		assertEquals(0.0, sparse.getMixCoefficientAt(0, 0), 0.0);
+	}
+}
@@ -0,0 +1,334 @@
+package com.tronacadmey.phantom.killalot;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Queue;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.tronacademy.phantom.messaging.OutgoingTransaction;
+import com.tronacademy.phantom.messaging.PBitmap;
+import com.tronacademy.phantom.messaging.ProtocolDecoder.ErrorType;
+import com.tronacademy.phantom.messaging.ProtocolDecoder.ProtocolDecodeListener;
+import com.tronacademy.phantom.messaging.ProtocolDecoder.RequestType;
+import com.tronacademy.phantom.messaging.TransactionError;
+
+/**
+ * Sends images and binary data with a {@code KillalotArqSender} over a simulated
+ * link which loses frames in a fixed pattern, on a simulated clock
+ * so the run is the same every time.
+ */
+public class KillalotArqSenderTest {
+	
+	private static final int WIDTH = 64;
+	private static final int HEIGHT = 48;
+	private static final int WINDOW = 64;
+	private static final int TRANSFER_ID = 7;
+	
+	// one tick of the simulated clock is a millisecond
+	private static final long TICK = 1000000L;
+	private static final int LATENCY_TICKS = 20;
+	private static final int ACK_INTERVAL_TICKS = 5;
+	private static final int BYTES_PER_TICK = 64;
+	private static final int MAX_TICKS = 60000;
+	
+	private final KillalotAssembler mAssembler = new KillalotAssembler();
+	private final KillalotDecoder mReceiver = new KillalotDecoder();
+	private final KillalotDecoder mAckDecoder = new KillalotDecoder();
+	private final List<PBitmap> mBitmaps = new ArrayList<PBitmap>();
+	private final List<byte[]> mBinary = new ArrayList<byte[]>();
+	private long mNow = 0;
+	
+	/**
+	 * One way link which delivers frames a fixed time after they
+	 * are sent, losing every frame whose count is a multiple of
+	 * the loss period.
+	 */
+	private static class Link {
+		
+		private final int mLossPeriod;
+		private final Queue<long[]> mDue = new ArrayDeque<long[]>();
+		private final Queue<byte[]> mFrames = new ArrayDeque<byte[]>();
+		private int mCount = 0;
+		private int mLost = 0;
+		
+		/**
+		 * @param lossPeriod Frames sent for each frame lost, 0 for none lost.
+		 */
+		Link(int lossPeriod) {
+			mLossPeriod = lossPeriod;
+		}
+		
+		void send(byte[] stream, int len, long now) {
+			int start = 0;
+			while (start < len) {
+				// SLIP frames are delimited by an END byte at both ends
+				int end = start + 1;
+				while (stream[end] != KillalotPacket.SLIP_END) {
+					end++;
+				}
+				mCount++;
+				if (mLossPeriod > 0 && mCount % mLossPeriod == 0) {
+					mLost++;
+				} else {
+					mDue.add(new long[] {now + LATENCY_TICKS*TICK});
+					mFrames.add(Arrays.copyOfRange(stream, start, end + 1));
+				}
+				start = end + 1;
+			}
+		}
+		
+		void deliver(long now, KillalotDecoder decoder) {
+			while (!mDue.isEmpty() && mDue.peek()[0] <= now) {
+				mDue.remove();
+				final byte[] frame = mFrames.remove();
+				decoder.decode(frame, 0, frame.length);
+			}
+		}
+	}
+	
+	@Before
+	public void listen() {
+		mReceiver.setOnProtocolDecodeListener(new ProtocolDecodeListener() {
+			@Override
+			public void onRecvChannels(int startChan, byte[] values) {
+			}
+			
+			@Override
+			public void onRecvCommands(String command, TransactionError error) {
+			}
+			
+			@Override
+			public void onRecvBitmap(PBitmap bmp, TransactionError error) {
+				assertNotNull(bmp);
+				mBitmaps.add(bmp);
+			}
+			
+			@Override
+			public void onRequest(RequestType request, int code) {
+			}
+			
+			@Override
+			public void onError(ErrorType error, int code) {
+			}
+		});
+		mReceiver.setOnBinaryListener(new KillalotDecoder.OnBinaryListener() {
+			@Override
+			public void onRecvBinary(byte[] data, TransactionError error) {
+				mBinary.add(data);
+			}
+		});
+	}
+	
+	/**
+	 * @return Image of diagonal stripes.
+	 */
+	private static PBitmap stripes() {
+		final short[] pixels = new short[WIDTH * HEIGHT];
+		for (int y=0; y<HEIGHT; y++) {
+			for (int x=0; x<WIDTH; x++) {
+				pixels[y*WIDTH + x] = (short) ((x + 3*y) * 0x0421);
+			}
+		}
+		return new PBitmap(pixels, WIDTH, HEIGHT);
+	}
+	
+	/**
+	 * @return Data which does not fill its last frame, including SLIP END and ESC bytes.
+	 */
+	private static byte[] data() {
+		final byte[] data = new byte[3000 + 5];
+		for (int i=0; i<data.length; i++) {
+			data[i] = (byte) (i * 37);
+		}
+		return data;
+	}
+	
+	private KillalotArqSender sender(OutgoingTransaction image) {
+		return new KillalotArqSender((OutgoingKillalotImageTransaction) image, WINDOW, TRANSFER_ID) {
+			@Override
+			protected long now() {
+				return mNow;
+			}
+		};
+	}
+	
+	private KillalotArqSender binarySender(OutgoingTransaction binary) {
+		return new KillalotArqSender((OutgoingKillalotBinaryTransaction) binary, WINDOW, TRANSFER_ID) {
+			@Override
+			protected long now() {
+				return mNow;
+			}
+		};
+	}
+	
+	private OutgoingTransaction binary(byte[] data) {
+		final ByteArrayOutputStream stream = new ByteArrayOutputStream();
+		stream.write(data, 0, data.length);
+		return mAssembler.serializeAsBinary("binary", stream);
+	}
+	
+	/**
+	 * Run the transfer until the data is delivered and acknowledged.
+	 */
+	private void transfer(KillalotArqSender sender, Link forward, Link back) {
+		transfer(sender, forward, back, KillalotAssembler.IMAGE_INDICATOR);
+	}
+	
+	/**
+	 * @param dataType Frame type of the data, which the receiver acknowledges.
+	 */
+	private void transfer(KillalotArqSender sender, Link forward, Link back, byte dataType) {
+		mAckDecoder.setOnAckListener(sender);
+		final ByteBuffer buffer = ByteBuffer.allocate(BYTES_PER_TICK);
+		final ByteBuffer ackBuffer = ByteBuffer.allocate(4096);
+		
+		for (int tick=0; tick<MAX_TICKS; tick++) {
+			mNow = tick * TICK;
+			buffer.clear();
+			sender.encodeTo(buffer);
+			forward.send(buffer.array(), buffer.position(), mNow);
+			forward.deliver(mNow, mReceiver);
+			
+			if (tick % ACK_INTERVAL_TICKS == 0) {
+				final OutgoingTransaction ack = (dataType == KillalotAssembler.BINARY_INDICATOR) ? 
+						mAssembler.serializeAck("ack", dataType, 
+								mReceiver.getBinaryTransferId(), mReceiver.getReceivedBinaryFrames()) : 
+						mAssembler.serializeAck("ack", dataType, 
+								mReceiver.getImageTransferId(), mReceiver.getReceivedImageFrames());
+				if (ack != null) {
+					ackBuffer.clear();
+					ack.encodeTo(ackBuffer);
+					back.send(ackBuffer.array(), ackBuffer.position(), mNow);
+				}
+			}
+			back.deliver(mNow, mAckDecoder);
+			
+			if (sender.isComplete() || sender.hasFailed()) {
+				return;
+			}
+		}
+	}
+	
+	@Test
+	public void deliversImageOverLossyLink() {
+		final PBitmap image = stripes();
+		final OutgoingTransaction trans = mAssembler.serializeAsBitmap("image", image);
+		final int frames = trans.getNumPackets();
+		final KillalotArqSender sender = sender(trans);
+		final Link forward = new Link(7);
+		final Link back = new Link(3);
+		
+		transfer(sender, forward, back);
+		
+		assertTrue(sender.isComplete());
+		assertFalse(sender.hasFailed());
+		assertEquals(1, mBitmaps.size());
+		assertEquals(image.asByteBuffer(), mBitmaps.get(0).asByteBuffer());
+		
+		// each lost frame costs a resend rather than the whole image
+		assertTrue(forward.mLost > 0);
+		assertEquals(frames, sender.getFramesSent() - sender.getFramesResent());
+		assertTrue(sender.getFramesResent() >= forward.mLost - sender.getFramesInFlight());
+		assertTrue(sender.getFramesResent() < frames / 4);
+	}
+	
+	@Test
+	public void sendsEachFrameOnceOverLosslessLink() {
+		final PBitmap image = stripes();
+		final OutgoingTransaction trans = mAssembler.serializeAsBitmap("image", image);
+		final KillalotArqSender sender = sender(trans);
+		
+		transfer(sender, new Link(0), new Link(0));
+		
+		assertTrue(sender.isComplete());
+		assertEquals(1, mBitmaps.size());
+		assertEquals(trans.getNumPackets(), sender.getFramesSent());
+		assertEquals(0, sender.getFramesResent());
+	}
+	
+	@Test
+	public void deliversBinaryOverLossyLink() {
+		final byte[] data = data();
+		final OutgoingTransaction trans = binary(data);
+		final int frames = trans.getNumPackets();
+		final KillalotArqSender sender = binarySender(trans);
+		final Link forward = new Link(7);
+		
+		transfer(sender, forward, new Link(3), KillalotAssembler.BINARY_INDICATOR);
+		
+		assertTrue(sender.isComplete());
+		assertFalse(sender.hasFailed());
+		assertEquals(1, mBinary.size());
+		assertArrayEquals(data, mBinary.get(0));
+		assertTrue(forward.mLost > 0);
+		assertEquals(frames, sender.getFramesSent() - sender.getFramesResent());
+		assertEquals(TRANSFER_ID, mReceiver.getBinaryTransferId());
+	}
+	
+	@Test
+	public void failsAfterMaxRetransmits() {
+		// empty data is sent in the meta data frame alone
+		final KillalotArqSender sender = binarySender(binary(new byte[0]));
+		sender.setMaxRetransmits(2);
+		final ByteBuffer buffer = ByteBuffer.allocate(KillalotPacket.WORST_CASE_CRC_PACKET_LEN);
+		
+		// nothing is ever acknowledged, so the frame times out every time
+		assertEquals(1, sender.encodeTo(buffer, 0));
+		long now = 0;
+		for (int retransmit=1; retransmit<=2; retransmit++) {
+			now += sender.getRetransmitTimeout();
+			buffer.clear();
+			assertEquals(1, sender.encodeTo(buffer, now));
+			assertFalse(sender.hasFailed());
+		}
+		
+		now += sender.getRetransmitTimeout();
+		buffer.clear();
+		assertEquals(0, sender.encodeTo(buffer, now));
+		assertTrue(sender.hasFailed());
+		assertEquals(3, sender.getFramesSent());
+		assertEquals(2, sender.getFramesResent());
+	}
+	
+	@Test
+	public void ignoresAcknowledgementsOfOtherTransfers() {
+		final KillalotArqSender sender = sender(mAssembler.serializeAsBitmap("image", stripes()));
+		sender.encodeTo(ByteBuffer.allocate(WINDOW * KillalotPacket.WORST_CASE_CRC_PACKET_LEN));
+		assertEquals(WINDOW, sender.getFramesInFlight());
+		
+		// every frame in the window received, but of an earlier image or of binary data
+		final int cumulative = WINDOW - 1;
+		sender.onAck(KillalotAssembler.IMAGE_INDICATOR, TRANSFER_ID - 1, cumulative, 0, 0, TICK);
+		sender.onAck(KillalotAssembler.BINARY_INDICATOR, TRANSFER_ID, cumulative, 0, 0, TICK);
+		assertEquals(WINDOW, sender.getFramesInFlight());
+		
+		sender.onAck(KillalotAssembler.IMAGE_INDICATOR, TRANSFER_ID, cumulative, 0, 0, TICK);
+		assertEquals(0, sender.getFramesInFlight());
+	}
+	
+	@Test
+	public void binaryIgnoresAcknowledgementsOfImages() {
+		final KillalotArqSender sender = binarySender(binary(data()));
+		sender.encodeTo(ByteBuffer.allocate(WINDOW * KillalotPacket.WORST_CASE_CRC_PACKET_LEN));
+		assertEquals(WINDOW, sender.getFramesInFlight());
+		
+		final int cumulative = WINDOW - 1;
+		sender.onAck(KillalotAssembler.IMAGE_INDICATOR, TRANSFER_ID, cumulative, 0, 0, TICK);
+		assertEquals(WINDOW, sender.getFramesInFlight());
+		
+		sender.onAck(KillalotAssembler.BINARY_INDICATOR, TRANSFER_ID, cumulative, 0, 0, TICK);
+		assertEquals(0, sender.getFramesInFlight());
+	}
+}
@@ -0,0 +1,319 @@
+package com.tronacadmey.phantom.killalot;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.tronacademy.phantom.messaging.ImageBufferPool;
+import com.tronacademy.phantom.messaging.OutgoingTransaction;
+import com.tronacademy.phantom.messaging.PBitmap;
+import com.tronacademy.phantom.messaging.ProtocolDecoder.ErrorType;
+import com.tronacademy.phantom.messaging.ProtocolDecoder.ProtocolDecodeListener;
+import com.tronacademy.phantom.messaging.ProtocolDecoder.RequestType;
+import com.tronacademy.phantom.messaging.TransactionError;
+
+/**
+ * Checks how a {@code KillalotDecoder} assembles images and checks frames.
+ */
+public class KillalotDecoderTest {
+
+	private static final int WIDTH = 64;
+	private static final int HEIGHT = 48;
+	
+	private final KillalotDecoder mDecoder = new KillalotDecoder();
+	private final List<PBitmap> mBitmaps = new ArrayList<PBitmap>();
+	private final List<String> mErrors = new ArrayList<String>();
+	
+	@Before
+	public void listen() {
+		mDecoder.setOnProtocolDecodeListener(new ProtocolDecodeListener() {
+			@Override
+			public void onRecvChannels(int startChan, byte[] values) {
+			}
+			
+			@Override
+			public void onRecvCommands(String command, TransactionError error) {
+			}
+			
+			@Override
+			public void onRecvBitmap(PBitmap bmp, TransactionError error) {
+				assertNotNull(bmp);
+				mBitmaps.add(bmp);
+			}
+			
+			@Override
+			public void onRequest(RequestType request, int code) {
+			}
+			
+			@Override
+			public void onError(ErrorType error, int code) {
+				mErrors.add(error + " " + code);
+			}
+		});
+	}
+	
+	/**
+	 * @return Image of horizontal bands, which compresses well.
+	 */
+	private static PBitmap bands(int seed) {
+		final short[] pixels = new short[WIDTH * HEIGHT];
+		for (int y=0; y<HEIGHT; y++) {
+			for (int x=0; x<WIDTH; x++) {
+				pixels[y*WIDTH + x] = (short) ((y / 4) * 0x0841 + seed);
+			}
+		}
+		return new PBitmap(pixels, WIDTH, HEIGHT);
+	}
+	
+	private static byte[] encode(OutgoingTransaction trans) {
+		final ByteBuffer buffer = ByteBuffer.allocate(trans.getNumPackets() * KillalotPacket.WORST_CASE_CRC_PACKET_LEN);
+		trans.encodeTo(buffer);
+		final byte[] stream = new byte[buffer.position()];
+		buffer.flip();
+		buffer.get(stream);
+		return stream;
+	}
+	
+	/**
+	 * @return Unencoded frames of a SLIP encoded stream.
+	 */
+	private static List<byte[]> frames(byte[] stream) {
+		final List<byte[]> frames = new ArrayList<byte[]>();
+		final byte[] frame = new byte[KillalotPacket.getDecodedSize()];
+		int len = 0;
+		boolean escaping = false;
+		for (byte b : stream) {
+			if (b == KillalotPacket.SLIP_END) {
+				if (len == frame.length) {
+					frames.add(frame.clone());
+				}
+				len = 0;
+			} else if (b == KillalotPacket.SLIP_ESC) {
+				escaping = true;
+			} else {
+				if (escaping) {
+					b = (b == KillalotPacket.SLIP_ESC_END) ? KillalotPacket.SLIP_END : KillalotPacket.SLIP_ESC;
+					escaping = false;
+				}
+				frame[len++] = b;
+			}
+		}
+		return frames;
+	}
+	
+	private void decodeFrames(List<byte[]> frames) {
+		final ByteBuffer buffer = ByteBuffer.allocate(frames.size() * KillalotPacket.WORST_CASE_CRC_PACKET_LEN);
+		for (byte[] frame : frames) {
+			KillalotPacket.encode(frame, 0, buffer);
+		}
+		mDecoder.decode(buffer.array(), 0, buffer.position());
+	}
+	
+	private void decode(OutgoingTransaction trans) {
+		final byte[] stream = encode(trans);
+		mDecoder.decode(stream, 0, stream.length);
+	}
+	
+	private static void assertSamePixels(PBitmap expected, PBitmap actual) {
+		assertEquals(expected.asByteBuffer(), actual.asByteBuffer());
+	}
+	
+	@Test
+	public void unfinishedCompressedImageIsReportedNotDelivered() {
+		final KillalotVideoSender video = new KillalotVideoSender(100, KillalotAssembler.K_IMG_ENC_RLE);
+		final PBitmap first = bands(0);
+		decode(video.serializeAsFrame("first", first));
+		assertEquals(1, mBitmaps.size());
+		
+		// compressed image whose head frame claims only half of its data frames
+		final KillalotAssembler assembler = new KillalotAssembler();
+		final List<byte[]> frames = frames(encode(
+				assembler.serializeAsBitmap("cut", bands(1), KillalotAssembler.K_IMG_ENC_RLE)));
+		final byte[] head = frames.get(0);
+		assertEquals(KillalotAssembler.IMAGEHEAD_INDICATOR, head[0]);
+		final int dataFrames = frames.size() - 1;
+		assertTrue(dataFrames >= 2);
+		final int cut = dataFrames / 2;
+		head[KillalotPacket.HEADER_LEN] = (byte) (cut >> 16);
+		head[KillalotPacket.HEADER_LEN + 1] = (byte) (cut >> 8);
+		head[KillalotPacket.HEADER_LEN + 2] = (byte) cut;
+		decodeFrames(frames.subList(0, cut + 1));
+		
+		assertEquals(1, mBitmaps.size());
+		assertEquals(1, mErrors.size());
+		assertEquals(ErrorType.SYS_DECODE_ERR + " " + KillalotAssembler.IMAGE_INDICATOR, mErrors.get(0));
+		
+		// tiles still patch the last image which decoded
+		decode(video.serializeAsFrame("second", first));
+		assertEquals(2, mBitmaps.size());
+		assertEquals(1, mErrors.size());
+		assertSamePixels(first, mBitmaps.get(1));
+	}
+	
+	/**
+	 * @return Copy of an image's pixels, to compare against later.
+	 */
+	private static PBitmap copyOf(PBitmap bmp) {
+		final PBitmap copy = new PBitmap(bmp.getEncoding(), bmp.getWidth(), bmp.getHeight());
+		copy.asByteBuffer().put(bmp.asByteBuffer());
+		return copy;
+	}
+	
+	/**
+	 * @return Image with one tile changed from {@code bands(0)}.
+	 */
+	private static PBitmap changedTile(int value) {
+		final PBitmap bmp = bands(0);
+		final ByteBuffer pixels = bmp.asByteBuffer();
+		pixels.putShort(0, (short) value);
+		return bmp;
+	}
+	
+	private void checkDeliveredImagesAreNotPatched(boolean pooled) {
+		if (pooled) {
+			mDecoder.setImageBufferPool(new ImageBufferPool());
+		}
+		final KillalotVideoSender video = new KillalotVideoSender(100, KillalotAssembler.K_IMG_ENC_RAW);
+		final PBitmap[] sent = {bands(0), changedTile(1), changedTile(2), changedTile(3)};
+		for (int i=0; i<sent.length; i++) {
+			decode(video.serializeAsFrame("frame" + i, sent[i]));
+		}
+		
+		assertEquals(sent.length, mBitmaps.size());
+		assertTrue(video.getTilesSent() > 0);
+		for (int i=0; i<sent.length; i++) {
+			// tile images after the first come from a pool even when none is set
+			assertEquals(pooled || i > 0, mBitmaps.get(i).isPooled());
+			assertSamePixels(sent[i], mBitmaps.get(i));
+			for (int j=0; j<i; j++) {
+				assertNotSame(mBitmaps.get(j), mBitmaps.get(i));
+			}
+		}
+		
+		// listeners may recycle what they get without upsetting later tiles
+		final PBitmap expected = copyOf(mBitmaps.get(sent.length - 1));
+		for (PBitmap bmp : mBitmaps) {
+			bmp.recycle();
+		}
+		mBitmaps.clear();
+		decode(video.serializeAsFrame("last", changedTile(3)));
+		assertEquals(1, mBitmaps.size());
+		assertSamePixels(expected, mBitmaps.get(0));
+	}
+	
+	@Test
+	public void tileFramesNeverWriteDeliveredImages() {
+		checkDeliveredImagesAreNotPatched(false);
+	}
+	
+	@Test
+	public void tileFramesNeverWriteDeliveredPooledImages() {
+		checkDeliveredImagesAreNotPatched(true);
+	}
+	
+	@Test
+	public void recycledTileImagesReuseTheirStore() {
+		final KillalotVideoSender video = new KillalotVideoSender(100, KillalotAssembler.K_IMG_ENC_RAW);
+		decode(video.serializeAsFrame("key", bands(0)));
+		decode(video.serializeAsFrame("tiles", changedTile(1)));
+		assertEquals(2, mBitmaps.size());
+		final byte[] store = mBitmaps.get(1).asByteBuffer().array();
+		mBitmaps.get(1).recycle();
+		
+		decode(video.serializeAsFrame("more tiles", changedTile(2)));
+		assertEquals(3, mBitmaps.size());
+		assertSame(store, mBitmaps.get(2).asByteBuffer().array());
+		assertSamePixels(changedTile(2), mBitmaps.get(2));
+	}
+	
+	@Test
+	public void frameCrcIsCcittFalse() {
+		// standard check value of CRC-16/CCITT-FALSE
+		assertEquals(0x29B1, KillalotPacket.crc16("123456789".getBytes(), 0, 9));
+		
+		final byte[] frame = new byte[KillalotPacket.getDecodedSize() + KillalotPacket.CRC_LEN];
+		for (int i=0; i<KillalotPacket.getDecodedSize(); i++) {
+			frame[i] = (byte) (i * 0x35 + 0xC0);
+		}
+		final int crc = KillalotPacket.crc16(frame, 0, KillalotPacket.getDecodedSize());
+		frame[KillalotPacket.getDecodedSize()] = (byte) (crc >>> 8);
+		frame[KillalotPacket.getDecodedSize() + 1] = (byte) crc;
+		assertTrue(KillalotPacket.checkCrc(frame, 0));
+		
+		for (int i=0; i<KillalotPacket.getDecodedSize(); i++) {
+			frame[i] ^= 0x10;
+			assertFalse(KillalotPacket.checkCrc(frame, 0));
+			frame[i] ^= 0x10;
+		}
+	}
+	
+	@Test
+	public void corruptFramesAreCountedNotDelivered() {
+		final KillalotAssembler assembler = new KillalotAssembler();
+		assembler.setFrameCrc(true);
+		mDecoder.setFrameCrc(true);
+		final byte[] stream = encode(assembler.serializeAsBitmap("image", bands(0)));
+		
+		// corrupt a payload byte of the fourth frame, leaving the SLIP framing intact
+		final byte[] corrupt = stream.clone();
+		int ends = 0;
+		int at = 0;
+		while (ends < 7) {
+			if (corrupt[at++] == KillalotPacket.SLIP_END) {
+				ends++;
+			}
+		}
+		at += KillalotPacket.HEADER_LEN;
+		while (corrupt[at] == KillalotPacket.SLIP_ESC || (byte) (corrupt[at] ^ 0x01) == KillalotPacket.SLIP_ESC || 
+				(byte) (corrupt[at] ^ 0x01) == KillalotPacket.SLIP_END) {
+			at++;
+		}
+		corrupt[at] ^= 0x01;
+		
+		mDecoder.decode(corrupt, 0, corrupt.length);
+		assertEquals(0, mBitmaps.size());
+		assertEquals(1, mDecoder.getLinkErrors().getCrcErrors());
+		assertEquals(0, mDecoder.getLinkErrors().getFramingErrors());
+		
+		// the image sent again begins a new transfer
+		mDecoder.decode(stream, 0, stream.length);
+		assertEquals(1, mBitmaps.size());
+		assertSamePixels(bands(0), mBitmaps.get(0));
+	}
+	
+	@Test
+	public void joiningBetweenFramesKeepsInStep() {
+		final KillalotAssembler assembler = new KillalotAssembler();
+		assembler.setFrameCrc(true);
+		mDecoder.setFrameCrc(true);
+		final byte[] image = encode(assembler.serializeAsBitmap("image", bands(0)));
+		
+		// join on the END closing the last frame of an earlier image, so 
+		// the image begins with two END bytes back to back
+		final byte[] stream = new byte[image.length + 1];
+		stream[0] = KillalotPacket.SLIP_END;
+		System.arraycopy(image, 0, stream, 1, image.length);
+		
+		mDecoder.decode(stream, 0, stream.length);
+		assertEquals(1, mBitmaps.size());
+		assertSamePixels(bands(0), mBitmaps.get(0));
+		assertEquals(0, mDecoder.getLinkErrors().getFramingErrors());
+		
+		// byte at a time decoding takes the same path
+		for (byte b : stream) {
+			mDecoder.decodeByte(b);
+		}
+		assertEquals(2, mBitmaps.size());
+		assertEquals(0, mDecoder.getLinkErrors().getFramingErrors());
+	}
+}
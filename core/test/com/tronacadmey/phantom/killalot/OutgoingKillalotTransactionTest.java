@@ -0,0 +1,139 @@
+package com.tronacadmey.phantom.killalot;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.tronacademy.phantom.messaging.OutgoingTransaction;
+import com.tronacademy.phantom.messaging.PBitmap;
+import com.tronacademy.phantom.messaging.ProtocolDecoder.ErrorType;
+import com.tronacademy.phantom.messaging.ProtocolDecoder.ProtocolDecodeListener;
+import com.tronacademy.phantom.messaging.ProtocolDecoder.RequestType;
+import com.tronacademy.phantom.messaging.TransactionError;
+
+/**
+ * Checks the copies of outgoing Killalot transactions given by
+ * {@code showContents()}, including for frames produced on demand.
+ */
+public class OutgoingKillalotTransactionTest {
+	
+	private static final int WIDTH = 32;
+	private static final int HEIGHT = 24;
+	
+	/**
+	 * @return Image whose pixels include SLIP END and ESC bytes.
+	 */
+	private static PBitmap gradient() {
+		final short[] pixels = new short[WIDTH * HEIGHT];
+		for (int i=0; i<pixels.length; i++) {
+			pixels[i] = (short) (i * 0x0C1B);
+		}
+		return new PBitmap(pixels, WIDTH, HEIGHT);
+	}
+	
+	private static OutgoingTransaction image(boolean crc) {
+		final KillalotAssembler assembler = new KillalotAssembler();
+		assembler.setFrameCrc(crc);
+		return assembler.serializeAsBitmap("image", gradient());
+	}
+	
+	private static byte[] encode(OutgoingTransaction trans) {
+		final ByteBuffer buffer = ByteBuffer.allocate(trans.getNumPackets() * KillalotPacket.WORST_CASE_CRC_PACKET_LEN);
+		trans.encodeTo(buffer);
+		final byte[] stream = new byte[buffer.position()];
+		buffer.flip();
+		buffer.get(stream);
+		return stream;
+	}
+	
+	private static byte[] concat(List<ByteArrayOutputStream> packets) {
+		final ByteArrayOutputStream stream = new ByteArrayOutputStream();
+		for (ByteArrayOutputStream packet : packets) {
+			stream.write(packet.toByteArray(), 0, packet.size());
+		}
+		return stream.toByteArray();
+	}
+	
+	/**
+	 * @return Bitmaps decoded from a stream.
+	 */
+	private static List<PBitmap> decode(byte[] stream, boolean crc) {
+		final List<PBitmap> bitmaps = new ArrayList<PBitmap>();
+		final KillalotDecoder decoder = new KillalotDecoder();
+		decoder.setFrameCrc(crc);
+		decoder.setOnProtocolDecodeListener(new ProtocolDecodeListener() {
+			@Override
+			public void onRecvChannels(int startChan, byte[] values) {
+			}
+			
+			@Override
+			public void onRecvCommands(String command, TransactionError error) {
+			}
+			
+			@Override
+			public void onRecvBitmap(PBitmap bmp, TransactionError error) {
+				assertNotNull(bmp);
+				bitmaps.add(bmp);
+			}
+			
+			@Override
+			public void onRequest(RequestType request, int code) {
+			}
+			
+			@Override
+			public void onError(ErrorType error, int code) {
+			}
+		});
+		decoder.decode(stream, 0, stream.length);
+		return bitmaps;
+	}
+	
+	private static void checkShowContentsMatchesEncoding(boolean crc) {
+		final OutgoingTransaction trans = image(crc);
+		final List<ByteArrayOutputStream> contents = trans.showContents();
+		assertEquals(trans.getNumPackets(), contents.size());
+		
+		final byte[] shown = concat(contents);
+		assertArrayEquals(encode(image(crc)), shown);
+		
+		final List<PBitmap> bitmaps = decode(shown, crc);
+		assertEquals(1, bitmaps.size());
+		assertEquals(gradient().asByteBuffer(), bitmaps.get(0).asByteBuffer());
+	}
+	
+	@Test
+	public void showContentsRoundTripsImage() {
+		checkShowContentsMatchesEncoding(false);
+	}
+	
+	@Test
+	public void showContentsKeepsFrameCrc() {
+		checkShowContentsMatchesEncoding(true);
+	}
+	
+	@Test
+	public void showContentsSkipsFramesAlreadySent() {
+		final OutgoingTransaction trans = image(false);
+		final List<ByteArrayOutputStream> all = trans.showContents();
+		trans.encodeNextTo(ByteBuffer.allocate(KillalotPacket.WORST_CASE_CRC_PACKET_LEN));
+		
+		final List<ByteArrayOutputStream> rest = trans.showContents();
+		assertEquals(all.size() - 1, rest.size());
+		assertArrayEquals(concat(all.subList(1, all.size())), concat(rest));
+	}
+	
+	@Test
+	public void copyDeliversSameImage() {
+		final OutgoingTransaction copy = new OutgoingTransaction(image(false));
+		final List<PBitmap> bitmaps = decode(encode(copy), false);
+		assertEquals(1, bitmaps.size());
+		assertEquals(gradient().asByteBuffer(), bitmaps.get(0).asByteBuffer());
+	}
+}